@@ -0,0 +1,144 @@
+package com.github.gfranks.fab.menu;
+
+import android.animation.Animator;
+import android.animation.AnimatorSet;
+import android.animation.ObjectAnimator;
+import android.animation.ValueAnimator;
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import android.view.animation.DecelerateInterpolator;
+
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * Compares the time it takes to render the frames of an expansion of a menu with 10 labelled
+ * actions, driven by the single timeline of the menu and by an AnimatorSet with a translation and
+ * an alpha ObjectAnimator per button and label, like the menu used before. Both are stepped frame by
+ * frame on the UI thread and the average time per frame is logged.
+ */
+public class AnimationFrameBenchmark extends InstrumentationTestCase {
+
+    private static final String TAG = "AnimationFrameBenchmark";
+
+    private static final int ACTIONS = 10;
+    private static final int FRAMES = 60;
+    private static final int WARM_UP_RUNS = 20;
+    private static final int RUNS = 200;
+    private static final int OLD_ANIMATION_DURATION = 300;
+
+    private FloatingActionsMenu mMenu;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mMenu = (FloatingActionsMenu) LayoutInflater.from(getInstrumentation().getContext())
+                .inflate(com.github.gfranks.fab.menu.test.R.layout.benchmark_menu, null);
+        for (int i = 0; i < ACTIONS; i++) {
+            FloatingActionButton button = new FloatingActionButton(mMenu.getContext());
+            button.setTitle("Action " + i);
+            mMenu.addButton(button);
+        }
+
+        final int size = MeasureSpec.makeMeasureSpec(4096, MeasureSpec.AT_MOST);
+        mMenu.measure(size, size);
+        mMenu.layout(0, 0, mMenu.getMeasuredWidth(), mMenu.getMeasuredHeight());
+    }
+
+    @UiThreadTest
+    public void testTimelineFrames() {
+        mMenu.expand();
+        final ValueAnimator animator = mMenu.getAnimator();
+        assertTrue(animator.isRunning());
+
+        final long duration = animator.getDuration();
+        runFrames(animator, duration, WARM_UP_RUNS);
+        final long time = runFrames(animator, duration, RUNS);
+        animator.cancel();
+
+        report("single timeline", time);
+    }
+
+    @UiThreadTest
+    public void testAnimatorSetFrames() {
+        final ArrayList<Animator> animators = createAnimators();
+        final AnimatorSet set = new AnimatorSet().setDuration(OLD_ANIMATION_DURATION);
+        set.playTogether(animators);
+        set.start();
+
+        runFrames(animators, WARM_UP_RUNS);
+        final long time = runFrames(animators, RUNS);
+        set.cancel();
+
+        report("AnimatorSet with " + animators.size() + " ObjectAnimators", time);
+    }
+
+    private long runFrames(ValueAnimator animator, long duration, int runs) {
+        final long start = System.nanoTime();
+        for (int run = 0; run < runs; run++) {
+            for (int frame = 0; frame < FRAMES; frame++) {
+                animator.setCurrentPlayTime(frame * duration / FRAMES);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Steps every animator of the set, like the animation handler does for each running animator on
+     * every frame.
+     */
+    private long runFrames(ArrayList<Animator> animators, int runs) {
+        final int count = animators.size();
+        final long start = System.nanoTime();
+        for (int run = 0; run < runs; run++) {
+            for (int frame = 0; frame < FRAMES; frame++) {
+                final long playTime = frame * OLD_ANIMATION_DURATION / FRAMES;
+                for (int i = 0; i < count; i++) {
+                    ((ValueAnimator) animators.get(i)).setCurrentPlayTime(playTime);
+                }
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * @return the animators the menu used to play when expanding: the plus icon rotation, and a
+     * translation and an alpha animator for each button and its label.
+     */
+    private ArrayList<Animator> createAnimators() {
+        final View addButton = mMenu.findViewById(R.id.fab_expand_menu_button);
+        final ArrayList<Animator> animators = new ArrayList<Animator>();
+
+        ObjectAnimator rotation = ObjectAnimator.ofFloat(addButton, View.ROTATION, 0f, 135f);
+        rotation.setInterpolator(new DecelerateInterpolator(3f));
+        animators.add(rotation);
+
+        for (int i = 0; i < mMenu.getChildCount(); i++) {
+            View child = mMenu.getChildAt(i);
+            if (child instanceof FloatingActionButton && child != addButton) {
+                addAnimators(animators, child, addButton.getTop() - child.getTop());
+                addAnimators(animators, ((FloatingActionButton) child).getCardView(), addButton.getTop() - child.getTop());
+            }
+        }
+        return animators;
+    }
+
+    private static void addAnimators(ArrayList<Animator> animators, View view, float collapsedTranslation) {
+        ObjectAnimator translation = ObjectAnimator.ofFloat(view, View.TRANSLATION_Y, collapsedTranslation, 0f);
+        translation.setInterpolator(new DecelerateInterpolator(3f));
+        animators.add(translation);
+
+        ObjectAnimator alpha = ObjectAnimator.ofFloat(view, View.ALPHA, 0f, 1f);
+        alpha.setInterpolator(new DecelerateInterpolator());
+        animators.add(alpha);
+    }
+
+    private static void report(String name, long time) {
+        Log.i(TAG, String.format(Locale.US, "%s: %.1f us per frame for %d labelled actions",
+                name, time / 1000f / (RUNS * FRAMES), ACTIONS));
+    }
+}
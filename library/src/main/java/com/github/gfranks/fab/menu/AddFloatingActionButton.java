@@ -20,12 +20,7 @@ package com.github.gfranks.fab.menu;
 
 import android.content.Context;
 import android.content.res.TypedArray;
-import android.graphics.Canvas;
-import android.graphics.Paint;
-import android.graphics.Paint.Style;
 import android.graphics.drawable.Drawable;
-import android.graphics.drawable.ShapeDrawable;
-import android.graphics.drawable.shapes.Shape;
 import android.support.annotation.ColorRes;
 import android.support.annotation.DrawableRes;
 import android.util.AttributeSet;
@@ -33,6 +28,7 @@ import android.util.AttributeSet;
 public class AddFloatingActionButton extends FloatingActionButton {
 
     int mPlusColor;
+    private PlusIconDrawable mPlusIcon;
 
     public AddFloatingActionButton(Context context) {
         this(context, null);
@@ -65,7 +61,7 @@ public class AddFloatingActionButton extends FloatingActionButton {
     public void setPlusColor(int color) {
         if (mPlusColor != color) {
             mPlusColor = color;
-            updateBackground();
+            updateIcon();
         }
     }
 
@@ -73,35 +69,99 @@ public class AddFloatingActionButton extends FloatingActionButton {
         setPlusColor(getColor(plusColor));
     }
 
+    @Override
+    public Editor edit() {
+        return new Editor();
+    }
+
     @Override
     public void setIcon(@DrawableRes int icon) {
         throw new UnsupportedOperationException("Use FloatingActionButton if you want to use custom icon");
     }
 
+    @Override
+    FabBackgroundCache.Key getBackgroundCacheKey() {
+        return createBackgroundCacheKey(0, mPlusColor);
+    }
+
     @Override
     Drawable getIconDrawable() {
-        final float iconSize = getDimension(R.dimen.fab_icon_size);
-        final float iconHalfSize = iconSize / 2f;
-
-        final float plusSize = getDimension(R.dimen.fab_plus_icon_size);
-        final float plusHalfStroke = getDimension(R.dimen.fab_plus_icon_stroke) / 2f;
-        final float plusOffset = (iconSize - plusSize) / 2f;
-
-        final Shape shape = new Shape() {
-            @Override
-            public void draw(Canvas canvas, Paint paint) {
-                canvas.drawRect(plusOffset, iconHalfSize - plusHalfStroke, iconSize - plusOffset, iconHalfSize + plusHalfStroke, paint);
-                canvas.drawRect(iconHalfSize - plusHalfStroke, plusOffset, iconHalfSize + plusHalfStroke, iconSize - plusOffset, paint);
-            }
-        };
+        return getPlusIconDrawable();
+    }
 
-        ShapeDrawable drawable = new ShapeDrawable(shape);
+    /**
+     * @return the plus icon of this button. The same instance is reused across background rebuilds
+     * and updated in place, so it can be animated.
+     */
+    PlusIconDrawable getPlusIconDrawable() {
+        final FabMetrics metrics = getMetrics();
+        if (mPlusIcon == null) {
+            mPlusIcon = new PlusIconDrawable(mPlusColor, metrics.iconSize, metrics.plusIconSize, metrics.plusIconStroke);
+        } else {
+            mPlusIcon.set(mPlusColor, metrics.iconSize, metrics.plusIconSize, metrics.plusIconStroke);
+        }
+        return mPlusIcon;
+    }
+
+    /**
+     * {@link FloatingActionButton.Editor} that can also change the plus icon color.
+     */
+    public class Editor extends FloatingActionButton.Editor {
+        private boolean mPlusColorChanged;
+        private int mPlusColor;
 
-        final Paint paint = drawable.getPaint();
-        paint.setColor(mPlusColor);
-        paint.setStyle(Style.FILL);
-        paint.setAntiAlias(true);
+        Editor() {
+        }
 
-        return drawable;
+        public Editor setPlusColor(int color) {
+            mPlusColor = color;
+            mPlusColorChanged = true;
+            return this;
+        }
+
+        @Override
+        public Editor setColorNormal(int color) {
+            super.setColorNormal(color);
+            return this;
+        }
+
+        @Override
+        public Editor setColorPressed(int color) {
+            super.setColorPressed(color);
+            return this;
+        }
+
+        @Override
+        public Editor setColorDisabled(int color) {
+            super.setColorDisabled(color);
+            return this;
+        }
+
+        @Override
+        public Editor setStrokeVisible(boolean visible) {
+            super.setStrokeVisible(visible);
+            return this;
+        }
+
+        @Override
+        public Editor setSize(@FAB_SIZE int size) {
+            super.setSize(size);
+            return this;
+        }
+
+        @Override
+        public Editor setIconTintColor(int color) {
+            super.setIconTintColor(color);
+            return this;
+        }
+
+        @Override
+        void applyChanges() {
+            super.applyChanges();
+            if (mPlusColorChanged) {
+                AddFloatingActionButton.this.setPlusColor(mPlusColor);
+                mPlusColorChanged = false;
+            }
+        }
     }
-}
\ No newline at end of file
+}
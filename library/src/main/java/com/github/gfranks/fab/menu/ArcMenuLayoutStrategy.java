@@ -0,0 +1,79 @@
+/*
+    Copyright (C) 2014 Jerzy Chalupski
+
+    Modified by: Garrett Franks 2015
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+package com.github.gfranks.fab.menu;
+
+/**
+ * Spreads the action buttons evenly over an arc around the add button. The radius grows when
+ * needed so that neighbouring buttons keep the menu spacing between them.
+ */
+public final class ArcMenuLayoutStrategy implements MenuLayoutStrategy {
+
+    private final float mStartAngle;
+    private final float mSweepAngle;
+    private final float mMinRadius;
+
+    /**
+     * @param startAngle the angle of the button closest to the add button, in degrees. 0 points
+     *                   right and 90 points up.
+     * @param sweepAngle the angle covered by the arc, in degrees. Positive angles turn counter
+     *                   clockwise.
+     * @param minRadius  the minimum distance between the centers of the add button and the action
+     *                   buttons, in pixels.
+     */
+    public ArcMenuLayoutStrategy(float startAngle, float sweepAngle, float minRadius) {
+        mStartAngle = startAngle;
+        mSweepAngle = sweepAngle;
+        mMinRadius = minRadius;
+    }
+
+    @Override
+    public void computePositions(int count, float[] sizes, float addButtonWidth, float addButtonHeight, float spacing,
+                                 float[] collapsed, float[] expanded) {
+        if (count == 0) {
+            return;
+        }
+
+        float maxSize = 0f;
+        for (int i = 0; i < 2 * count; i++) {
+            maxSize = Math.max(maxSize, sizes[i]);
+        }
+
+        // Clear the add button, and keep neighbours apart along the chord between them
+        float radius = Math.max(mMinRadius, Math.max(addButtonWidth, addButtonHeight) / 2f + spacing + maxSize / 2f);
+        final double step = count > 1 ? Math.toRadians(mSweepAngle) / (count - 1) : 0;
+        final double halfStep = Math.abs(step) / 2;
+        if (count > 1 && halfStep > 0) {
+            radius = Math.max(radius, (float) ((maxSize + spacing) / (2 * Math.sin(Math.min(halfStep, Math.PI / 2)))));
+        }
+
+        final double start = count > 1 ? Math.toRadians(mStartAngle) : Math.toRadians(mStartAngle + mSweepAngle / 2f);
+        for (int i = 0; i < count; i++) {
+            final double angle = start + i * step;
+            collapsed[2 * i] = 0f;
+            collapsed[2 * i + 1] = 0f;
+            expanded[2 * i] = (float) (radius * Math.cos(angle));
+            // Screen coordinates grow downwards
+            expanded[2 * i + 1] = (float) (-radius * Math.sin(angle));
+        }
+    }
+
+    @Override
+    public boolean showsLabels() {
+        return false;
+    }
+}
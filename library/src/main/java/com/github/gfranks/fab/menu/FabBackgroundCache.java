@@ -0,0 +1,173 @@
+/*
+    Copyright (C) 2014 Jerzy Chalupski
+
+    Modified by: Garrett Franks 2015
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.github.gfranks.fab.menu;
+
+import android.content.res.Resources;
+import android.graphics.drawable.Drawable;
+import android.util.LruCache;
+
+/**
+ * Process wide cache of {@link FloatingActionButton} backgrounds. Buttons that share the same style
+ * share the same {@link Drawable.ConstantState} instead of building their own drawable graph.
+ */
+public final class FabBackgroundCache {
+
+    private static final int MAX_ENTRIES = 32;
+
+    private static final LruCache<Key, Drawable.ConstantState> sCache = new LruCache<Key, Drawable.ConstantState>(MAX_ENTRIES);
+
+    private FabBackgroundCache() {
+    }
+
+    /**
+     * @return the number of background lookups that were served from the cache.
+     */
+    public static int getHitCount() {
+        return sCache.hitCount();
+    }
+
+    /**
+     * @return the number of background lookups that had to build a new background.
+     */
+    public static int getMissCount() {
+        return sCache.missCount();
+    }
+
+    /**
+     * @return the number of backgrounds evicted to keep the cache within its bounds.
+     */
+    public static int getEvictionCount() {
+        return sCache.evictionCount();
+    }
+
+    public static void clear() {
+        sCache.evictAll();
+    }
+
+    static Drawable get(Key key, Resources res) {
+        Drawable.ConstantState state = sCache.get(key);
+        return state != null ? state.newDrawable(res) : null;
+    }
+
+    static void put(Key key, Drawable drawable) {
+        // Drawables that can't share their state (i.e. ones holding a per button icon) are simply not cached
+        Drawable.ConstantState state = drawable.getConstantState();
+        if (state != null) {
+            sCache.put(key, state);
+        }
+    }
+
+    static final class Key {
+        private final Class<?> mType;
+        private final int mSize;
+        private final int mColorNormal;
+        private final int mColorPressed;
+        private final int mColorDisabled;
+        private final boolean mStrokeVisible;
+        private final int mIcon;
+        private final int mIconColor;
+        private final float mDensity;
+        private final float mCircleSize;
+        private final float mIconSize;
+        private final float mStrokeWidth;
+        private final float mPlusIconSize;
+        private final float mPlusIconStroke;
+        private final int mTranslucentMode;
+        private final float mShadowRadius;
+        private final float mShadowOffset;
+        private final int mShadowColor;
+
+        Key(Class<?> type, int size, int colorNormal, int colorPressed, int colorDisabled, boolean strokeVisible,
+            int icon, int iconColor, float density, FabMetrics metrics, int translucentMode, float shadowRadius,
+            float shadowOffset, int shadowColor) {
+            mType = type;
+            mSize = size;
+            mColorNormal = colorNormal;
+            mColorPressed = colorPressed;
+            mColorDisabled = colorDisabled;
+            mStrokeVisible = strokeVisible;
+            mIcon = icon;
+            mIconColor = iconColor;
+            mDensity = density;
+            // The dimensions can change with the configuration while the density stays the same
+            mCircleSize = metrics.getCircleSize(size);
+            mIconSize = metrics.iconSize;
+            mStrokeWidth = metrics.strokeWidth;
+            mPlusIconSize = metrics.plusIconSize;
+            mPlusIconStroke = metrics.plusIconStroke;
+            mTranslucentMode = translucentMode;
+            mShadowRadius = shadowRadius;
+            mShadowOffset = shadowOffset;
+            mShadowColor = shadowColor;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key) o;
+            return mType == key.mType
+                    && mSize == key.mSize
+                    && mColorNormal == key.mColorNormal
+                    && mColorPressed == key.mColorPressed
+                    && mColorDisabled == key.mColorDisabled
+                    && mStrokeVisible == key.mStrokeVisible
+                    && mIcon == key.mIcon
+                    && mIconColor == key.mIconColor
+                    && Float.compare(mDensity, key.mDensity) == 0
+                    && Float.compare(mCircleSize, key.mCircleSize) == 0
+                    && Float.compare(mIconSize, key.mIconSize) == 0
+                    && Float.compare(mStrokeWidth, key.mStrokeWidth) == 0
+                    && Float.compare(mPlusIconSize, key.mPlusIconSize) == 0
+                    && Float.compare(mPlusIconStroke, key.mPlusIconStroke) == 0
+                    && mTranslucentMode == key.mTranslucentMode
+                    && Float.compare(mShadowRadius, key.mShadowRadius) == 0
+                    && Float.compare(mShadowOffset, key.mShadowOffset) == 0
+                    && mShadowColor == key.mShadowColor;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mType.hashCode();
+            result = 31 * result + mSize;
+            result = 31 * result + mColorNormal;
+            result = 31 * result + mColorPressed;
+            result = 31 * result + mColorDisabled;
+            result = 31 * result + (mStrokeVisible ? 1 : 0);
+            result = 31 * result + mIcon;
+            result = 31 * result + mIconColor;
+            result = 31 * result + Float.floatToIntBits(mDensity);
+            result = 31 * result + Float.floatToIntBits(mCircleSize);
+            result = 31 * result + Float.floatToIntBits(mIconSize);
+            result = 31 * result + Float.floatToIntBits(mStrokeWidth);
+            result = 31 * result + Float.floatToIntBits(mPlusIconSize);
+            result = 31 * result + Float.floatToIntBits(mPlusIconStroke);
+            result = 31 * result + mTranslucentMode;
+            result = 31 * result + Float.floatToIntBits(mShadowRadius);
+            result = 31 * result + Float.floatToIntBits(mShadowOffset);
+            result = 31 * result + mShadowColor;
+            return result;
+        }
+    }
+}
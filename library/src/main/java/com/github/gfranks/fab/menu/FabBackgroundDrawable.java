@@ -0,0 +1,402 @@
+/*
+    Copyright (C) 2014 Jerzy Chalupski
+
+    Modified by: Garrett Franks 2015
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.github.gfranks.fab.menu;
+
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.Paint.Style;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Shader;
+import android.graphics.drawable.Drawable;
+
+/**
+ * Draws the whole {@link FloatingActionButton} background (shadow, state dependent fill, gradient
+ * strokes and icon) in a single pass. The geometry mirrors the layer insets of the shadow, fill,
+ * outer stroke and icon layers the button used to stack in a LayerDrawable.
+ */
+class FabBackgroundDrawable extends Drawable implements Drawable.Callback {
+
+    private static final int STATE_NORMAL = 0;
+    private static final int STATE_PRESSED = 1;
+    private static final int STATE_DISABLED = 2;
+
+    private static final int OUTER_STROKE_ALPHA = (int) (255f * 0.02f);
+
+    private BackgroundState mState;
+    private final Drawable mShadow;
+    private Drawable mIcon;
+
+    private final Paint mFillPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mInnerStrokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mOuterStrokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Shader[] mInnerStrokeShaders = new Shader[3];
+
+    private final RectF mCircleRect = new RectF();
+    private final RectF mInnerStrokeRect = new RectF();
+    private final RectF mOuterStrokeRect = new RectF();
+    private float mInnerStrokeLeft;
+    private float mInnerStrokeTop;
+
+    private int mCurrentState = STATE_NORMAL;
+    private int mAlpha = 255;
+    private ColorFilter mColorFilter;
+    private boolean mMutated;
+
+    FabBackgroundDrawable(Drawable shadow, Drawable icon, int colorNormal, int colorPressed, int colorDisabled,
+                          boolean strokeVisible, float circleSize, float iconSize, float strokeWidth,
+                          float shadowRadius, float shadowOffset, boolean premultiplyAlpha) {
+        this(new BackgroundState(shadow.getConstantState(), icon.getConstantState(),
+                new int[]{colorNormal, colorPressed, colorDisabled}, strokeVisible, circleSize, iconSize,
+                strokeWidth, shadowRadius, shadowOffset, premultiplyAlpha), shadow, icon);
+    }
+
+    private FabBackgroundDrawable(BackgroundState state, Drawable shadow, Drawable icon) {
+        mState = state;
+        mShadow = shadow;
+        mIcon = icon;
+        mShadow.setCallback(this);
+        mIcon.setCallback(this);
+
+        mFillPaint.setStyle(Style.FILL);
+
+        mInnerStrokePaint.setStyle(Style.STROKE);
+        mInnerStrokePaint.setStrokeWidth(state.mStrokeWidth);
+
+        mOuterStrokePaint.setStyle(Style.STROKE);
+        mOuterStrokePaint.setStrokeWidth(state.mStrokeWidth);
+        mOuterStrokePaint.setColor(Color.BLACK);
+        mOuterStrokePaint.setAlpha(OUTER_STROKE_ALPHA);
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        mShadow.draw(canvas);
+
+        final int color = mState.mColors[mCurrentState];
+        final int alpha = Color.alpha(color);
+        final boolean translucent = alpha != 255 && mState.mStrokeVisible;
+        // Premultiplied mode puts the alpha into the fill and stroke paints instead of compositing
+        // an offscreen layer. The only difference is the sub-pixel band where the inner stroke
+        // overlaps the fill, which blends twice.
+        final boolean premultiplied = translucent && mState.mPremultiplyAlpha;
+        final boolean offscreen = translucent && !premultiplied;
+        final int fillColor = premultiplied ? color : opaque(color);
+
+        int saveCount = -1;
+        if (offscreen) {
+            saveCount = canvas.saveLayerAlpha(mCircleRect.left, mCircleRect.top, mCircleRect.right, mCircleRect.bottom,
+                    modulateAlpha(alpha, mAlpha), Canvas.ALL_SAVE_FLAG);
+        }
+
+        mFillPaint.setColor(fillColor);
+        if (!offscreen) {
+            mFillPaint.setAlpha(modulateAlpha(Color.alpha(fillColor), mAlpha));
+        }
+        canvas.drawOval(mCircleRect, mFillPaint);
+
+        if (mState.mStrokeVisible) {
+            mInnerStrokePaint.setShader(getInnerStrokeShader(fillColor));
+            mInnerStrokePaint.setAlpha(offscreen ? 255 : mAlpha);
+
+            int count = canvas.save();
+            canvas.translate(mInnerStrokeLeft, mInnerStrokeTop);
+            canvas.drawOval(mInnerStrokeRect, mInnerStrokePaint);
+            canvas.restoreToCount(count);
+        }
+
+        if (offscreen) {
+            canvas.restoreToCount(saveCount);
+        }
+
+        mOuterStrokePaint.setAlpha(modulateAlpha(OUTER_STROKE_ALPHA, mAlpha));
+        canvas.drawOval(mOuterStrokeRect, mOuterStrokePaint);
+
+        mIcon.draw(canvas);
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        final BackgroundState state = mState;
+
+        mShadow.setBounds(bounds);
+
+        mCircleRect.set(
+                bounds.left + state.mCircleInsetHorizontal,
+                bounds.top + state.mCircleInsetTop,
+                bounds.right - state.mCircleInsetHorizontal,
+                bounds.bottom - state.mCircleInsetBottom);
+
+        // The inner strokes are drawn in their own coordinate space so their gradient starts at 0
+        mInnerStrokeLeft = mCircleRect.left + state.mInnerStrokeInset;
+        mInnerStrokeTop = mCircleRect.top + state.mInnerStrokeInset;
+        mInnerStrokeRect.set(0, 0,
+                mCircleRect.width() - 2 * state.mInnerStrokeInset,
+                mCircleRect.height() - 2 * state.mInnerStrokeInset);
+        for (int i = 0; i < mInnerStrokeShaders.length; i++) {
+            mInnerStrokeShaders[i] = null;
+        }
+
+        mOuterStrokeRect.set(
+                bounds.left + state.mOuterStrokeInsetHorizontal,
+                bounds.top + state.mOuterStrokeInsetTop,
+                bounds.right - state.mOuterStrokeInsetHorizontal,
+                bounds.bottom - state.mOuterStrokeInsetBottom);
+
+        updateIconBounds(bounds);
+    }
+
+    private void updateIconBounds(Rect bounds) {
+        final BackgroundState state = mState;
+        mIcon.setBounds(
+                bounds.left + state.mCircleInsetHorizontal + state.mIconOffset,
+                bounds.top + state.mCircleInsetTop + state.mIconOffset,
+                bounds.right - state.mCircleInsetHorizontal - state.mIconOffset,
+                bounds.bottom - state.mCircleInsetBottom - state.mIconOffset);
+    }
+
+    /**
+     * Changes the fill colors of this drawable only. Drawables created from the same cached state
+     * keep their colors, since the state is replaced rather than modified.
+     */
+    void setColors(int colorNormal, int colorPressed, int colorDisabled) {
+        final int[] colors = mState.mColors;
+        if (colors[STATE_NORMAL] == colorNormal && colors[STATE_PRESSED] == colorPressed
+                && colors[STATE_DISABLED] == colorDisabled) {
+            return;
+        }
+
+        mState = new BackgroundState(mState, mState.mShadowState, mState.mIconState,
+                new int[]{colorNormal, colorPressed, colorDisabled});
+        for (int i = 0; i < mInnerStrokeShaders.length; i++) {
+            mInnerStrokeShaders[i] = null;
+        }
+        invalidateSelf();
+    }
+
+    /**
+     * Replaces the icon of this drawable only, keeping the shadow, fill and strokes.
+     */
+    void setIcon(Drawable icon) {
+        if (icon != mIcon) {
+            mIcon.setCallback(null);
+            mIcon = mMutated ? icon.mutate() : icon;
+            mIcon.setCallback(this);
+            if (mAlpha != 255) {
+                mIcon.setAlpha(mAlpha);
+            }
+            if (mColorFilter != null) {
+                mIcon.setColorFilter(mColorFilter);
+            }
+            if (mIcon.isStateful()) {
+                mIcon.setState(getState());
+            }
+            updateIconBounds(getBounds());
+            mState = new BackgroundState(mState, mState.mShadowState, mIcon.getConstantState(), mState.mColors);
+        }
+        invalidateSelf();
+    }
+
+    @Override
+    public boolean isStateful() {
+        return true;
+    }
+
+    @Override
+    protected boolean onStateChange(int[] stateSet) {
+        boolean enabled = false;
+        boolean pressed = false;
+        for (int state : stateSet) {
+            if (state == android.R.attr.state_enabled) {
+                enabled = true;
+            } else if (state == android.R.attr.state_pressed) {
+                pressed = true;
+            }
+        }
+
+        int newState = !enabled ? STATE_DISABLED : pressed ? STATE_PRESSED : STATE_NORMAL;
+        boolean changed = newState != mCurrentState;
+        mCurrentState = newState;
+
+        if (mIcon.isStateful()) {
+            changed |= mIcon.setState(stateSet);
+        }
+        return changed;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        if (mAlpha != alpha) {
+            mAlpha = alpha;
+            mShadow.setAlpha(alpha);
+            mIcon.setAlpha(alpha);
+            invalidateSelf();
+        }
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter cf) {
+        mColorFilter = cf;
+        mFillPaint.setColorFilter(cf);
+        mInnerStrokePaint.setColorFilter(cf);
+        mOuterStrokePaint.setColorFilter(cf);
+        mShadow.setColorFilter(cf);
+        mIcon.setColorFilter(cf);
+        invalidateSelf();
+    }
+
+    /**
+     * Mutates the shadow and the icon too, since copies of a cached background share their states
+     * (and before Lollipop their paints), so alpha or a color filter would reach every button.
+     */
+    @Override
+    public Drawable mutate() {
+        if (!mMutated && super.mutate() == this) {
+            mShadow.mutate();
+            mIcon.mutate();
+            mState = new BackgroundState(mState, mShadow.getConstantState(), mIcon.getConstantState(), mState.mColors);
+            mMutated = true;
+        }
+        return this;
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    @Override
+    public ConstantState getConstantState() {
+        // Icons and shadows that can't be recreated can't be shared
+        return mState.mIconState != null && mState.mShadowState != null ? mState : null;
+    }
+
+    @Override
+    public void invalidateDrawable(Drawable who) {
+        invalidateSelf();
+    }
+
+    @Override
+    public void scheduleDrawable(Drawable who, Runnable what, long when) {
+        scheduleSelf(what, when);
+    }
+
+    @Override
+    public void unscheduleDrawable(Drawable who, Runnable what) {
+        unscheduleSelf(what);
+    }
+
+    private Shader getInnerStrokeShader(int color) {
+        Shader shader = mInnerStrokeShaders[mCurrentState];
+        if (shader == null) {
+            shader = FabStrokeCache.getStrokeShader(color, mInnerStrokeRect.height());
+            mInnerStrokeShaders[mCurrentState] = shader;
+        }
+        return shader;
+    }
+
+    private static int modulateAlpha(int paintAlpha, int alpha) {
+        int scale = alpha + (alpha >>> 7);
+        return paintAlpha * scale >>> 8;
+    }
+
+    private static int opaque(int argb) {
+        return Color.rgb(
+                Color.red(argb),
+                Color.green(argb),
+                Color.blue(argb)
+        );
+    }
+
+    static final class BackgroundState extends ConstantState {
+        private final ConstantState mShadowState;
+        private final ConstantState mIconState;
+        private final int[] mColors;
+        private final boolean mStrokeVisible;
+        private final float mStrokeWidth;
+        private final boolean mPremultiplyAlpha;
+
+        private final int mCircleInsetHorizontal;
+        private final int mCircleInsetTop;
+        private final int mCircleInsetBottom;
+        private final int mInnerStrokeInset;
+        private final int mOuterStrokeInsetHorizontal;
+        private final int mOuterStrokeInsetTop;
+        private final int mOuterStrokeInsetBottom;
+        private final int mIconOffset;
+
+        BackgroundState(ConstantState shadowState, ConstantState iconState, int[] colors, boolean strokeVisible,
+                        float circleSize, float iconSize, float strokeWidth, float shadowRadius, float shadowOffset,
+                        boolean premultiplyAlpha) {
+            mShadowState = shadowState;
+            mIconState = iconState;
+            mColors = colors;
+            mStrokeVisible = strokeVisible;
+            mStrokeWidth = strokeWidth;
+            mPremultiplyAlpha = premultiplyAlpha;
+
+            final float halfStrokeWidth = strokeWidth / 2f;
+
+            mCircleInsetHorizontal = (int) (shadowRadius);
+            mCircleInsetTop = (int) (shadowRadius - shadowOffset);
+            mCircleInsetBottom = (int) (shadowRadius + shadowOffset);
+            mInnerStrokeInset = (int) halfStrokeWidth;
+            mOuterStrokeInsetHorizontal = (int) (mCircleInsetHorizontal - halfStrokeWidth);
+            mOuterStrokeInsetTop = (int) (mCircleInsetTop - halfStrokeWidth);
+            mOuterStrokeInsetBottom = (int) (mCircleInsetBottom - halfStrokeWidth);
+            mIconOffset = (int) (circleSize - iconSize) / 2;
+        }
+
+        BackgroundState(BackgroundState state, ConstantState shadowState, ConstantState iconState, int[] colors) {
+            mShadowState = shadowState;
+            mIconState = iconState;
+            mColors = colors;
+            mStrokeVisible = state.mStrokeVisible;
+            mStrokeWidth = state.mStrokeWidth;
+            mPremultiplyAlpha = state.mPremultiplyAlpha;
+            mCircleInsetHorizontal = state.mCircleInsetHorizontal;
+            mCircleInsetTop = state.mCircleInsetTop;
+            mCircleInsetBottom = state.mCircleInsetBottom;
+            mInnerStrokeInset = state.mInnerStrokeInset;
+            mOuterStrokeInsetHorizontal = state.mOuterStrokeInsetHorizontal;
+            mOuterStrokeInsetTop = state.mOuterStrokeInsetTop;
+            mOuterStrokeInsetBottom = state.mOuterStrokeInsetBottom;
+            mIconOffset = state.mIconOffset;
+        }
+
+        @Override
+        public Drawable newDrawable() {
+            return newDrawable(null);
+        }
+
+        @Override
+        public Drawable newDrawable(Resources res) {
+            return new FabBackgroundDrawable(this, mShadowState.newDrawable(res), mIconState.newDrawable(res));
+        }
+
+        @Override
+        public int getChangingConfigurations() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+    Copyright (C) 2014 Jerzy Chalupski
+
+    Modified by: Garrett Franks 2015
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.github.gfranks.fab.menu;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+/**
+ * Clears the shared {@link FloatingActionButton} caches when the system runs low on memory.
+ */
+final class FabCacheTrimmer implements ComponentCallbacks2 {
+
+    private static boolean sRegistered;
+
+    private FabCacheTrimmer() {
+    }
+
+    static void register(Context context) {
+        Context applicationContext = context.getApplicationContext();
+        if (!sRegistered && applicationContext != null) {
+            sRegistered = true;
+            applicationContext.registerComponentCallbacks(new FabCacheTrimmer());
+        }
+    }
+
+    static void trim(int level) {
+        // Going to the background only hides the UI, it comes back right away with the same buttons
+        if (level >= TRIM_MEMORY_BACKGROUND || (level >= TRIM_MEMORY_RUNNING_LOW && level < TRIM_MEMORY_UI_HIDDEN)) {
+            // Cached backgrounds reference their icons, so both have to go to release the bitmaps
+            FabBackgroundCache.clear();
+            FabIconCache.clear();
+            FabShadowCache.clear();
+        }
+        if (level >= TRIM_MEMORY_COMPLETE) {
+            FabStrokeCache.clear();
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        trim(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        trim(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+}
@@ -0,0 +1,125 @@
+/*
+    Copyright (C) 2014 Jerzy Chalupski
+
+    Modified by: Garrett Franks 2015
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.github.gfranks.fab.menu;
+
+import android.content.res.Resources;
+import android.graphics.PorterDuff;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.Build.VERSION_CODES;
+import android.support.annotation.DrawableRes;
+import android.util.LruCache;
+
+/**
+ * Process wide cache of tinted {@link FloatingActionButton} icons. Buttons using the same icon
+ * resource and tint share one {@link Drawable.ConstantState}, and with it one bitmap.
+ */
+public final class FabIconCache {
+
+    private static final int MAX_ENTRIES = 64;
+
+    private static final LruCache<Key, Drawable.ConstantState> sCache = new LruCache<Key, Drawable.ConstantState>(MAX_ENTRIES);
+
+    private FabIconCache() {
+    }
+
+    /**
+     * @return the number of icon lookups that were served from the cache.
+     */
+    public static int getHitCount() {
+        return sCache.hitCount();
+    }
+
+    /**
+     * @return the number of icon lookups that had to load and tint the icon.
+     */
+    public static int getMissCount() {
+        return sCache.missCount();
+    }
+
+    public static void clear() {
+        sCache.evictAll();
+    }
+
+    /**
+     * @return the icon resource tinted with the given color, or null if the resource couldn't be
+     * loaded.
+     */
+    static Drawable getTintedDrawable(Resources res, @DrawableRes int resId, int tint) {
+        final Key key = new Key(resId, tint, res.getDisplayMetrics().density);
+        Drawable.ConstantState state = sCache.get(key);
+        if (state != null) {
+            return state.newDrawable(res);
+        }
+
+        Drawable drawable = res.getDrawable(resId);
+        if (drawable == null) {
+            return null;
+        }
+
+        // Mutate so the tint doesn't leak into the drawable state Resources hands out to others
+        drawable = drawable.mutate();
+        if (Build.VERSION.SDK_INT >= VERSION_CODES.LOLLIPOP) {
+            drawable.setTint(tint);
+        } else {
+            drawable.setColorFilter(tint, PorterDuff.Mode.SRC_IN);
+        }
+
+        state = drawable.getConstantState();
+        if (state != null) {
+            sCache.put(key, state);
+        }
+        return drawable;
+    }
+
+    private static final class Key {
+        private final int mResId;
+        private final int mTint;
+        private final float mDensity;
+
+        Key(int resId, int tint, float density) {
+            mResId = resId;
+            mTint = tint;
+            mDensity = density;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key) o;
+            return mResId == key.mResId
+                    && mTint == key.mTint
+                    && Float.compare(mDensity, key.mDensity) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mResId;
+            result = 31 * result + mTint;
+            result = 31 * result + Float.floatToIntBits(mDensity);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+    Copyright (C) 2014 Jerzy Chalupski
+
+    Modified by: Garrett Franks 2015
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.github.gfranks.fab.menu;
+
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.util.LruCache;
+
+/**
+ * Immutable set of the dimensions used by {@link FloatingActionButton}s and
+ * {@link FloatingActionsMenu}s. It is resolved once per configuration and density and shared by all
+ * buttons and menus using them, so contexts in different configurations (e.g. in multi-window) don't
+ * keep replacing each other's metrics.
+ */
+final class FabMetrics {
+
+    private static final int MAX_ENTRIES = 4;
+
+    private static final LruCache<Key, FabMetrics> sMetrics = new LruCache<Key, FabMetrics>(MAX_ENTRIES);
+    private static FabMetrics sLastMetrics;
+
+    final float sizeNormal;
+    final float sizeMini;
+    final float iconSize;
+    final float plusIconSize;
+    final float plusIconStroke;
+    final float shadowRadius;
+    final float shadowOffset;
+    final float strokeWidth;
+    final float actionsSpacing;
+    final int labelsMargin;
+    final int labelsVerticalOffset;
+
+    private final Configuration mConfiguration;
+    private final float mDensity;
+
+    private FabMetrics(Resources res, Configuration configuration, float density) {
+        mConfiguration = configuration;
+        mDensity = density;
+
+        sizeNormal = res.getDimension(R.dimen.fab_size_normal);
+        sizeMini = res.getDimension(R.dimen.fab_size_mini);
+        iconSize = res.getDimension(R.dimen.fab_icon_size);
+        plusIconSize = res.getDimension(R.dimen.fab_plus_icon_size);
+        plusIconStroke = res.getDimension(R.dimen.fab_plus_icon_stroke);
+        shadowRadius = res.getDimension(R.dimen.fab_shadow_radius);
+        shadowOffset = res.getDimension(R.dimen.fab_shadow_offset);
+        strokeWidth = res.getDimension(R.dimen.fab_stroke_width);
+        actionsSpacing = res.getDimension(R.dimen.fab_actions_spacing);
+        labelsMargin = res.getDimensionPixelSize(R.dimen.fab_labels_margin);
+        labelsVerticalOffset = res.getDimensionPixelSize(R.dimen.fab_shadow_offset);
+    }
+
+    /**
+     * @return the metrics for the given resources, resolving them only the first time their
+     * configuration and density are seen.
+     */
+    static FabMetrics get(Resources res) {
+        final Configuration configuration = res.getConfiguration();
+        final float density = res.getDisplayMetrics().density;
+
+        // Most lookups come from the same configuration as the previous one
+        FabMetrics metrics = sLastMetrics;
+        if (metrics != null && metrics.mDensity == density && metrics.mConfiguration.equals(configuration)) {
+            return metrics;
+        }
+
+        metrics = sMetrics.get(new Key(configuration, density));
+        if (metrics == null) {
+            // The configuration is updated in place on changes, so keep a copy to compare against
+            metrics = new FabMetrics(res, new Configuration(configuration), density);
+            sMetrics.put(new Key(metrics.mConfiguration, density), metrics);
+        }
+        sLastMetrics = metrics;
+        return metrics;
+    }
+
+    float getCircleSize(@FloatingActionButton.FAB_SIZE int size) {
+        return size == FloatingActionButton.SIZE_NORMAL ? sizeNormal : sizeMini;
+    }
+
+    private static final class Key {
+        private final Configuration mConfiguration;
+        private final float mDensity;
+
+        Key(Configuration configuration, float density) {
+            mConfiguration = configuration;
+            mDensity = density;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key) o;
+            return Float.compare(mDensity, key.mDensity) == 0 && mConfiguration.equals(key.mConfiguration);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * mConfiguration.hashCode() + Float.floatToIntBits(mDensity);
+        }
+    }
+}
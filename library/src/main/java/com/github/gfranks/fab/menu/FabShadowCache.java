@@ -0,0 +1,200 @@
+/*
+    Copyright (C) 2014 Jerzy Chalupski
+
+    Modified by: Garrett Franks 2015
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.github.gfranks.fab.menu;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BlurMaskFilter;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.DrawableRes;
+import android.util.LruCache;
+
+/**
+ * Process wide cache of {@link FloatingActionButton} shadows. The bundled shadow resources are
+ * loaded once per size and density; shadows with a custom radius or color are rendered once into a
+ * bitmap and shared by every button using the same parameters.
+ */
+public final class FabShadowCache {
+
+    /**
+     * Color of generated shadows when only the radius or offset was customized.
+     */
+    public static final int DEFAULT_SHADOW_COLOR = 0x42000000;
+
+    private static final int MAX_ENTRIES = 8;
+    private static final int KIND_BUTTON = 0;
+    private static final int KIND_LABEL = 1;
+
+    private static final LruCache<Key, Drawable.ConstantState> sCache = new LruCache<Key, Drawable.ConstantState>(MAX_ENTRIES);
+
+    private FabShadowCache() {
+    }
+
+    /**
+     * @return the number of shadow lookups that were served from the cache.
+     */
+    public static int getHitCount() {
+        return sCache.hitCount();
+    }
+
+    /**
+     * @return the number of shadow lookups that had to load or render the shadow.
+     */
+    public static int getMissCount() {
+        return sCache.missCount();
+    }
+
+    public static void clear() {
+        sCache.evictAll();
+    }
+
+    /**
+     * @return the bundled shadow resource.
+     */
+    static Drawable getShadow(Resources res, @DrawableRes int resId, float circleSize) {
+        final Key key = new Key(KIND_BUTTON, resId, circleSize, 0f, 0, res.getDisplayMetrics().density);
+        Drawable.ConstantState state = sCache.get(key);
+        if (state != null) {
+            return state.newDrawable(res);
+        }
+
+        Drawable shadow = res.getDrawable(resId);
+        state = shadow.getConstantState();
+        if (state != null) {
+            sCache.put(key, state);
+        }
+        return shadow;
+    }
+
+    /**
+     * @return a shadow of the given radius and color for a circle of the given size. The shadow is
+     * centered in the button, the shadow offset is applied by moving the circle up instead, so
+     * buttons that only differ in their offset share the same bitmap.
+     */
+    static Drawable getShadow(Resources res, float circleSize, float radius, int color) {
+        final Key key = new Key(KIND_BUTTON, 0, circleSize, radius, color, res.getDisplayMetrics().density);
+        Drawable.ConstantState state = sCache.get(key);
+        if (state != null) {
+            return state.newDrawable(res);
+        }
+
+        Drawable shadow = new BitmapDrawable(res, createShadowBitmap(circleSize, radius, color));
+        sCache.put(key, shadow.getConstantState());
+        return shadow;
+    }
+
+    /**
+     * @return a square bitmap holding a blurred rounded rectangle with the given corner radius, to be
+     * drawn as a nine-patch: every row and column but the middle one belongs to a corner or an edge,
+     * and the blur extends {@code ceil(radius)} pixels past the rectangle.
+     */
+    static Bitmap getLabelShadow(Resources res, float cornerRadius, float radius, int color) {
+        final Key key = new Key(KIND_LABEL, 0, cornerRadius, radius, color, res.getDisplayMetrics().density);
+        Drawable.ConstantState state = sCache.get(key);
+        if (state == null) {
+            state = new BitmapDrawable(res, createLabelShadowBitmap(cornerRadius, radius, color)).getConstantState();
+            sCache.put(key, state);
+        }
+        return ((BitmapDrawable) state.newDrawable(res)).getBitmap();
+    }
+
+    private static Bitmap createLabelShadowBitmap(float cornerRadius, float radius, int color) {
+        final int inset = (int) Math.ceil(radius);
+        final int size = 2 * (inset + (int) Math.ceil(cornerRadius)) + 1;
+        final Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(bitmap);
+
+        final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(color);
+        if (radius > 0) {
+            paint.setMaskFilter(new BlurMaskFilter(radius, BlurMaskFilter.Blur.NORMAL));
+        }
+
+        canvas.drawRoundRect(new RectF(inset, inset, size - inset, size - inset), cornerRadius, cornerRadius, paint);
+        return bitmap;
+    }
+
+    private static Bitmap createShadowBitmap(float circleSize, float radius, int color) {
+        // Same size as the button, so the shadow isn't scaled when it's stretched to the bounds
+        final int size = Math.max(1, (int) (circleSize + 2 * radius));
+        final Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(bitmap);
+
+        final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(color);
+        if (radius > 0) {
+            paint.setMaskFilter(new BlurMaskFilter(radius, BlurMaskFilter.Blur.NORMAL));
+        }
+
+        canvas.drawCircle(size / 2f, size / 2f, circleSize / 2f, paint);
+        return bitmap;
+    }
+
+    private static final class Key {
+        private final int mKind;
+        private final int mResId;
+        // The circle size of a button shadow, the corner radius of a label shadow
+        private final float mSize;
+        private final float mRadius;
+        private final int mColor;
+        private final float mDensity;
+
+        Key(int kind, int resId, float size, float radius, int color, float density) {
+            mKind = kind;
+            mResId = resId;
+            mSize = size;
+            mRadius = radius;
+            mColor = color;
+            mDensity = density;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key) o;
+            return mKind == key.mKind
+                    && mResId == key.mResId
+                    && Float.compare(mSize, key.mSize) == 0
+                    && Float.compare(mRadius, key.mRadius) == 0
+                    && mColor == key.mColor
+                    && Float.compare(mDensity, key.mDensity) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mKind;
+            result = 31 * result + mResId;
+            result = 31 * result + Float.floatToIntBits(mSize);
+            result = 31 * result + Float.floatToIntBits(mRadius);
+            result = 31 * result + mColor;
+            result = 31 * result + Float.floatToIntBits(mDensity);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+    Copyright (C) 2014 Jerzy Chalupski
+
+    Modified by: Garrett Franks 2015
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.github.gfranks.fab.menu;
+
+import android.graphics.Color;
+import android.graphics.LinearGradient;
+import android.graphics.Shader;
+import android.graphics.Shader.TileMode;
+
+/**
+ * Small LRU caches for the colors derived from a fill color and for the gradient shaders of the
+ * inner strokes. Both are keyed by primitives so lookups, including repeated rebuilds and resizes,
+ * don't allocate. Only accessed from the UI thread.
+ */
+public final class FabStrokeCache {
+
+    private static final int MAX_COLORS = 16;
+    private static final int MAX_SHADERS = 32;
+    private static final int STROKE_COLOR_COUNT = 5;
+    private static final float[] STROKE_POSITIONS = new float[]{0f, 0.2f, 0.5f, 0.8f, 1f};
+
+    private static final int[] sColorKeys = new int[MAX_COLORS];
+    private static final int[][] sColorValues = new int[MAX_COLORS][STROKE_COLOR_COUNT];
+    private static final long[] sColorLastUse = new long[MAX_COLORS];
+    private static int sColorCount;
+
+    private static final long[] sShaderKeys = new long[MAX_SHADERS];
+    private static final Shader[] sShaderValues = new Shader[MAX_SHADERS];
+    private static final long[] sShaderLastUse = new long[MAX_SHADERS];
+    private static int sShaderCount;
+
+    private static final float[] sHsv = new float[3];
+    private static long sClock;
+    private static int sColorHits;
+    private static int sColorMisses;
+    private static int sShaderHits;
+    private static int sShaderMisses;
+
+    private FabStrokeCache() {
+    }
+
+    /**
+     * @return the number of derived color lookups that were served from the cache.
+     */
+    public static int getColorHitCount() {
+        return sColorHits;
+    }
+
+    /**
+     * @return the number of derived color lookups that had to compute the colors.
+     */
+    public static int getColorMissCount() {
+        return sColorMisses;
+    }
+
+    /**
+     * @return the number of stroke shader lookups that were served from the cache.
+     */
+    public static int getShaderHitCount() {
+        return sShaderHits;
+    }
+
+    /**
+     * @return the number of stroke shader lookups that had to create a new shader.
+     */
+    public static int getShaderMissCount() {
+        return sShaderMisses;
+    }
+
+    public static void clear() {
+        sColorCount = 0;
+        for (int i = 0; i < sShaderCount; i++) {
+            sShaderValues[i] = null;
+        }
+        sShaderCount = 0;
+    }
+
+    /**
+     * @return the vertical inner stroke gradient for the given color and stroke height. Translucent
+     * colors produce a gradient with their alpha premultiplied into every stop.
+     */
+    static Shader getStrokeShader(int color, float height) {
+        final long key = ((long) color << 32) | (Float.floatToIntBits(height) & 0xffffffffL);
+
+        for (int i = 0; i < sShaderCount; i++) {
+            if (sShaderKeys[i] == key) {
+                sShaderHits++;
+                sShaderLastUse[i] = ++sClock;
+                return sShaderValues[i];
+            }
+        }
+
+        sShaderMisses++;
+        int index = sShaderCount < MAX_SHADERS ? sShaderCount++ : leastRecentlyUsed(sShaderLastUse, MAX_SHADERS);
+        Shader shader = new LinearGradient(0, 0, 0, height, getStrokeColors(color), STROKE_POSITIONS, TileMode.CLAMP);
+        sShaderKeys[index] = key;
+        sShaderValues[index] = shader;
+        sShaderLastUse[index] = ++sClock;
+        return shader;
+    }
+
+    /**
+     * @return the five gradient stops (top, half transparent top, color, half transparent bottom and
+     * bottom) of the inner strokes for the given color, scaled by the color's alpha. The returned
+     * array must not be modified.
+     */
+    static int[] getStrokeColors(int color) {
+        for (int i = 0; i < sColorCount; i++) {
+            if (sColorKeys[i] == color) {
+                sColorHits++;
+                sColorLastUse[i] = ++sClock;
+                return sColorValues[i];
+            }
+        }
+
+        sColorMisses++;
+        int index = sColorCount < MAX_COLORS ? sColorCount++ : leastRecentlyUsed(sColorLastUse, MAX_COLORS);
+        final int[] colors = sColorValues[index];
+        final int opaqueColor = color | 0xff000000;
+        final int bottomStrokeColor = adjustColorBrightness(opaqueColor, 0.9f);
+        final int topStrokeColor = adjustColorBrightness(opaqueColor, 1.1f);
+        colors[0] = topStrokeColor;
+        colors[1] = halfTransparent(topStrokeColor);
+        colors[2] = opaqueColor;
+        colors[3] = halfTransparent(bottomStrokeColor);
+        colors[4] = bottomStrokeColor;
+
+        final int alpha = Color.alpha(color);
+        if (alpha != 255) {
+            for (int i = 0; i < STROKE_COLOR_COUNT; i++) {
+                colors[i] = (colors[i] & 0x00ffffff) | ((Color.alpha(colors[i]) * alpha / 255) << 24);
+            }
+        }
+
+        sColorKeys[index] = color;
+        sColorLastUse[index] = ++sClock;
+        return colors;
+    }
+
+    private static int leastRecentlyUsed(long[] lastUse, int count) {
+        int index = 0;
+        for (int i = 1; i < count; i++) {
+            if (lastUse[i] < lastUse[index]) {
+                index = i;
+            }
+        }
+        return index;
+    }
+
+    private static int adjustColorBrightness(int argb, float factor) {
+        Color.colorToHSV(argb, sHsv);
+
+        sHsv[2] = Math.min(sHsv[2] * factor, 1f);
+
+        return Color.HSVToColor(Color.alpha(argb), sHsv);
+    }
+
+    private static int halfTransparent(int argb) {
+        return Color.argb(
+                Color.alpha(argb) / 2,
+                Color.red(argb),
+                Color.green(argb),
+                Color.blue(argb)
+        );
+    }
+}
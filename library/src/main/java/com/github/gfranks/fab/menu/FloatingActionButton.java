@@ -19,35 +19,24 @@
 package com.github.gfranks.fab.menu;
 
 import android.content.Context;
+import android.content.res.Configuration;
 import android.content.res.TypedArray;
-import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.LinearGradient;
-import android.graphics.Paint;
-import android.graphics.Paint.Style;
 import android.graphics.PorterDuff;
-import android.graphics.Rect;
-import android.graphics.Shader;
-import android.graphics.Shader.TileMode;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
-import android.graphics.drawable.LayerDrawable;
-import android.graphics.drawable.ShapeDrawable;
-import android.graphics.drawable.ShapeDrawable.ShaderFactory;
-import android.graphics.drawable.StateListDrawable;
-import android.graphics.drawable.shapes.OvalShape;
 import android.os.Build;
 import android.os.Build.VERSION_CODES;
+import android.text.TextUtils;
 import android.support.annotation.ColorRes;
-import android.support.annotation.DimenRes;
 import android.support.annotation.DrawableRes;
 import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
 import android.support.v7.widget.CardView;
 import android.util.AttributeSet;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.ImageButton;
-import android.widget.TextView;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -56,6 +45,20 @@ public class FloatingActionButton extends ImageButton {
 
     public static final int SIZE_NORMAL = 0;
     public static final int SIZE_MINI = 1;
+
+    /**
+     * Translucent fills are composited through an offscreen layer on every draw.
+     */
+    public static final int TRANSLUCENT_MODE_LAYER = 0;
+    /**
+     * Translucent fills carry their alpha in the fill and stroke paints, without an offscreen layer.
+     */
+    public static final int TRANSLUCENT_MODE_PREMULTIPLIED = 1;
+    /**
+     * Translucent buttons are rendered into a hardware layer, so the offscreen composite only runs
+     * when the button itself is redrawn rather than on every frame it moves or fades.
+     */
+    public static final int TRANSLUCENT_MODE_HARDWARE_LAYER = 2;
     int mColorNormal;
     int mColorPressed;
     int mColorDisabled;
@@ -65,14 +68,36 @@ public class FloatingActionButton extends ImageButton {
     private int mIcon;
     private Drawable mIconDrawable;
     private int mSize;
+    private int mTranslucentMode;
+    private boolean mTranslucentLayerApplied;
 
+    private FabMetrics mMetrics;
     private float mCircleSize;
     private float mShadowRadius;
     private float mShadowOffset;
+    private float mCustomShadowRadius = -1f;
+    private float mCustomShadowOffset = -1f;
+    private int mShadowColor;
     private int mDrawableSize;
     private boolean mCloseMenuOnClick;
     private FloatingActionsMenu mFabMenu;
     private int mIconTintColor;
+    private boolean mBatchingUpdates;
+    private int mBatchedRebuilds;
+    private boolean mBackgroundDirty;
+    private boolean mBackgroundRebuildScheduled;
+    private boolean mAttachedToWindow;
+    private final ViewTreeObserver.OnPreDrawListener mBackgroundRebuildListener = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            if (isShown()) {
+                rebuildBackgroundIfNeeded();
+            }
+            // Hidden buttons wait for onVisibilityChanged instead of checking every frame
+            unscheduleBackgroundRebuild();
+            return true;
+        }
+    };
 
     public FloatingActionButton(Context context) {
         this(context, null);
@@ -89,6 +114,8 @@ public class FloatingActionButton extends ImageButton {
     }
 
     void init(Context context, AttributeSet attributeSet) {
+        FabCacheTrimmer.register(context);
+
         TypedArray attr = context.obtainStyledAttributes(attributeSet, R.styleable.FloatingActionButton, 0, 0);
         mColorNormal = attr.getColor(R.styleable.FloatingActionButton_fab_colorNormal, getColor(android.R.color.holo_blue_dark));
         mColorPressed = attr.getColor(R.styleable.FloatingActionButton_fab_colorPressed, getColor(android.R.color.holo_blue_light));
@@ -98,22 +125,60 @@ public class FloatingActionButton extends ImageButton {
         mIcon = attr.getResourceId(R.styleable.FloatingActionButton_fab_icon, 0);
         mTitle = attr.getString(R.styleable.FloatingActionButton_fab_title);
         mStrokeVisible = attr.getBoolean(R.styleable.FloatingActionButton_fab_stroke_visible, true);
+        mTranslucentMode = attr.getInt(R.styleable.FloatingActionButton_fab_translucentMode, TRANSLUCENT_MODE_LAYER);
+        mCustomShadowRadius = attr.getDimension(R.styleable.FloatingActionButton_fab_shadowRadius, -1f);
+        mCustomShadowOffset = attr.getDimension(R.styleable.FloatingActionButton_fab_shadowOffset, -1f);
+        mShadowColor = attr.getColor(R.styleable.FloatingActionButton_fab_shadowColor, 0);
         attr.recycle();
 
-        updateCircleSize();
-        mShadowRadius = getDimension(R.dimen.fab_shadow_radius);
-        mShadowOffset = getDimension(R.dimen.fab_shadow_offset);
-        updateDrawableSize();
+        updateMetrics();
 
+        // Going from no background to one requests a layout, so a placeholder with the same minimum
+        // size and padding (none) is set now and the real background only replaces it before the
+        // first frame that draws the button
+        setBackgroundCompat(new ColorDrawable(Color.TRANSPARENT));
         updateBackground();
     }
 
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+
+        if (FabMetrics.get(getResources()) != mMetrics) {
+            updateMetrics();
+            updateBackground();
+            requestLayout();
+        }
+    }
+
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
         setMeasuredDimension(mDrawableSize, mDrawableSize);
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mAttachedToWindow = true;
+        scheduleBackgroundRebuild();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        unscheduleBackgroundRebuild();
+        mAttachedToWindow = false;
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        if (visibility == VISIBLE) {
+            scheduleBackgroundRebuild();
+        }
+    }
+
     @Override
     public void setVisibility(int visibility) {
         CardView cardView = getCardView();
@@ -148,6 +213,7 @@ public class FloatingActionButton extends ImageButton {
             updateCircleSize();
             updateDrawableSize();
             updateBackground();
+            requestLayout();
         }
     }
 
@@ -155,7 +221,7 @@ public class FloatingActionButton extends ImageButton {
         if (mIcon != icon) {
             mIcon = icon;
             mIconDrawable = null;
-            updateBackground();
+            updateIcon();
         }
     }
 
@@ -169,7 +235,7 @@ public class FloatingActionButton extends ImageButton {
     public void setColorNormal(int color) {
         if (mColorNormal != color) {
             mColorNormal = color;
-            updateBackground();
+            updateColors();
         }
     }
 
@@ -187,7 +253,7 @@ public class FloatingActionButton extends ImageButton {
     public void setColorPressed(int color) {
         if (mColorPressed != color) {
             mColorPressed = color;
-            updateBackground();
+            updateColors();
         }
     }
 
@@ -205,7 +271,7 @@ public class FloatingActionButton extends ImageButton {
     public void setColorDisabled(int color) {
         if (mColorDisabled != color) {
             mColorDisabled = color;
-            updateBackground();
+            updateColors();
         }
     }
 
@@ -224,15 +290,59 @@ public class FloatingActionButton extends ImageButton {
         }
     }
 
+    @TRANSLUCENT_MODE
+    public int getTranslucentMode() {
+        return mTranslucentMode;
+    }
+
+    /**
+     * Selects how translucent fill colors are rendered.
+     */
+    public void setTranslucentMode(@TRANSLUCENT_MODE int mode) {
+        if (mode != TRANSLUCENT_MODE_LAYER && mode != TRANSLUCENT_MODE_PREMULTIPLIED && mode != TRANSLUCENT_MODE_HARDWARE_LAYER) {
+            throw new IllegalArgumentException("Use @TRANSLUCENT_MODE constants only!");
+        }
+
+        if (mTranslucentMode != mode) {
+            mTranslucentMode = mode;
+            updateBackground();
+        }
+    }
+
+    /**
+     * Replaces the bundled shadow with a generated one.
+     *
+     * @param radius the blur radius of the shadow in pixels, or a negative value for the default.
+     * @param offset how far below the button the shadow is cast in pixels, or a negative value for
+     *               the default.
+     * @param color  the shadow color, or 0 for {@link FabShadowCache#DEFAULT_SHADOW_COLOR}.
+     */
+    public void setShadow(float radius, float offset, int color) {
+        if (mCustomShadowRadius != radius || mCustomShadowOffset != offset || mShadowColor != color) {
+            mCustomShadowRadius = radius;
+            mCustomShadowOffset = offset;
+            mShadowColor = color;
+            updateMetrics();
+            updateBackground();
+            requestLayout();
+        }
+    }
+
     public String getTitle() {
         return mTitle;
     }
 
     public void setTitle(String title) {
+        if (TextUtils.equals(mTitle, title)) {
+            return;
+        }
+
         mTitle = title;
         CardView cardView = getCardView();
         if (cardView != null) {
-            ((TextView) cardView.getChildAt(0)).setText(title);
+            ((LabelTextView) cardView.getChildAt(0)).setLabelText(title);
+        } else if (mFabMenu != null) {
+            mFabMenu.onButtonTitleChanged(this);
         }
     }
 
@@ -246,7 +356,43 @@ public class FloatingActionButton extends ImageButton {
 
     public void setIconTintColor(int color) {
         mIconTintColor = color;
+        updateIcon();
+    }
+
+    /**
+     * Clears the backgrounds and icons shared between buttons. This already happens automatically
+     * when the application receives {@link android.content.ComponentCallbacks2#onTrimMemory(int)}.
+     */
+    public static void onTrimMemory(int level) {
+        FabCacheTrimmer.trim(level);
+    }
+
+    /**
+     * @return an {@link Editor} that collects several property changes and rebuilds the background
+     * at most once when they are applied.
+     */
+    public Editor edit() {
+        return new Editor();
+    }
+
+    void beginBatchedUpdates() {
+        mBatchingUpdates = true;
+        mBatchedRebuilds = 0;
+    }
+
+    /**
+     * @return the number of background rebuilds that were saved by batching.
+     */
+    int endBatchedUpdates() {
+        mBatchingUpdates = false;
+        int requestedRebuilds = mBatchedRebuilds;
+        mBatchedRebuilds = 0;
+
+        if (requestedRebuilds == 0) {
+            return 0;
+        }
         updateBackground();
+        return requestedRebuilds - 1;
     }
 
     private void updateDrawableSize() {
@@ -254,19 +400,15 @@ public class FloatingActionButton extends ImageButton {
     }
 
     private void updateCircleSize() {
-        mCircleSize = getDimension(mSize == SIZE_NORMAL ? R.dimen.fab_size_normal : R.dimen.fab_size_mini);
+        mCircleSize = mMetrics.getCircleSize(mSize);
     }
 
-    private Drawable getTintedDrawable(int resId) {
-        Drawable drawable = getResources().getDrawable(resId);
-        if (drawable != null) {
-            if (Build.VERSION.SDK_INT >= VERSION_CODES.LOLLIPOP) {
-                drawable.setTint(mIconTintColor);
-            } else {
-                drawable.mutate().setColorFilter(mIconTintColor, PorterDuff.Mode.SRC_IN);
-            }
-        }
-        return drawable;
+    private void updateMetrics() {
+        mMetrics = FabMetrics.get(getResources());
+        mShadowRadius = mCustomShadowRadius >= 0 ? mCustomShadowRadius : mMetrics.shadowRadius;
+        mShadowOffset = mCustomShadowOffset >= 0 ? mCustomShadowOffset : mMetrics.shadowOffset;
+        updateCircleSize();
+        updateDrawableSize();
     }
 
     private Drawable getTintedDrawable(Drawable drawable) {
@@ -280,216 +422,310 @@ public class FloatingActionButton extends ImageButton {
         return drawable;
     }
 
-    private StateListDrawable createFillDrawable(float strokeWidth) {
-        StateListDrawable drawable = new StateListDrawable();
-        drawable.addState(new int[]{-android.R.attr.state_enabled}, createCircleDrawable(mColorDisabled, strokeWidth));
-        drawable.addState(new int[]{android.R.attr.state_pressed}, createCircleDrawable(mColorPressed, strokeWidth));
-        drawable.addState(new int[]{}, createCircleDrawable(mColorNormal, strokeWidth));
-        return drawable;
+    private void setBackgroundCompat(Drawable drawable) {
+        if (Build.VERSION.SDK_INT >= VERSION_CODES.JELLY_BEAN) {
+            setBackground(drawable);
+        } else {
+            setBackgroundDrawable(drawable);
+        }
     }
 
-    private Drawable createCircleDrawable(int color, float strokeWidth) {
-        int alpha = Color.alpha(color);
-        int opaqueColor = opaque(color);
-
-        ShapeDrawable fillDrawable = new ShapeDrawable(new OvalShape());
-
-        final Paint paint = fillDrawable.getPaint();
-        paint.setAntiAlias(true);
-        paint.setColor(opaqueColor);
-
-        Drawable[] layers = {
-                fillDrawable,
-                createInnerStrokesDrawable(opaqueColor, strokeWidth)
-        };
-
-        LayerDrawable drawable = alpha == 255 || !mStrokeVisible
-                ? new LayerDrawable(layers)
-                : new TranslucentLayerDrawable(alpha, layers);
-
-        int halfStrokeWidth = (int) (strokeWidth / 2f);
-        drawable.setLayerInset(1, halfStrokeWidth, halfStrokeWidth, halfStrokeWidth, halfStrokeWidth);
-
-        return drawable;
+    Drawable getIconDrawable() {
+        if (mIconDrawable != null) {
+            return getTintedDrawable(mIconDrawable);
+        } else if (mIcon != 0) {
+            Drawable icon = FabIconCache.getTintedDrawable(getResources(), mIcon, mIconTintColor);
+            return icon != null ? icon : new ColorDrawable(Color.TRANSPARENT);
+        } else {
+            return new ColorDrawable(Color.TRANSPARENT);
+        }
     }
 
-    private Drawable createOuterStrokeDrawable(float strokeWidth) {
-        ShapeDrawable shapeDrawable = new ShapeDrawable(new OvalShape());
-
-        final Paint paint = shapeDrawable.getPaint();
-        paint.setAntiAlias(true);
-        paint.setStrokeWidth(strokeWidth);
-        paint.setStyle(Style.STROKE);
-        paint.setColor(Color.BLACK);
-        paint.setAlpha(opacityToAlpha(0.02f));
-
-        return shapeDrawable;
+    public void setIconDrawable(@NonNull Drawable iconDrawable) {
+        if (mIconDrawable != iconDrawable) {
+            mIcon = 0;
+            mIconDrawable = iconDrawable;
+            updateIcon();
+        }
     }
 
-    private int opacityToAlpha(float opacity) {
-        return (int) (255f * opacity);
+    FabMetrics getMetrics() {
+        return mMetrics;
     }
 
-    private int darkenColor(int argb) {
-        return adjustColorBrightness(argb, 0.9f);
+    int getColor(@ColorRes int id) {
+        return getResources().getColor(id);
     }
 
-    private int lightenColor(int argb) {
-        return adjustColorBrightness(argb, 1.1f);
+    CardView getCardView() {
+        return (CardView) getTag(R.id.fab_card_label);
     }
 
-    private int adjustColorBrightness(int argb, float factor) {
-        float[] hsv = new float[3];
-        Color.colorToHSV(argb, hsv);
+    /**
+     * Marks the background as dirty. It is rebuilt before the next frame that draws this button, so
+     * buttons that are never shown never build a background.
+     */
+    void updateBackground() {
+        if (mBatchingUpdates) {
+            mBatchedRebuilds++;
+            return;
+        }
 
-        hsv[2] = Math.min(hsv[2] * factor, 1f);
+        mBackgroundDirty = true;
+        scheduleBackgroundRebuild();
+    }
 
-        return Color.HSVToColor(Color.alpha(argb), hsv);
+    /**
+     * Changes the fill colors of the current background in place, or marks it as dirty if there is
+     * none yet or it is about to be rebuilt anyway.
+     */
+    void updateColors() {
+        FabBackgroundDrawable background = getEditableBackground();
+        if (background != null) {
+            background.setColors(mColorNormal, mColorPressed, mColorDisabled);
+            updateTranslucentLayerType();
+        } else {
+            updateBackground();
+        }
     }
 
-    private int halfTransparent(int argb) {
-        return Color.argb(
-                Color.alpha(argb) / 2,
-                Color.red(argb),
-                Color.green(argb),
-                Color.blue(argb)
-        );
+    /**
+     * Swaps the icon of the current background in place, or marks it as dirty if there is none yet
+     * or it is about to be rebuilt anyway.
+     */
+    void updateIcon() {
+        FabBackgroundDrawable background = getEditableBackground();
+        if (background != null) {
+            background.setIcon(getIconDrawable());
+        } else {
+            updateBackground();
+        }
     }
 
-    private int opaque(int argb) {
-        return Color.rgb(
-                Color.red(argb),
-                Color.green(argb),
-                Color.blue(argb)
-        );
+    private FabBackgroundDrawable getEditableBackground() {
+        if (mBackgroundDirty || mBatchedRebuilds > 0) {
+            return null;
+        }
+        Drawable background = getBackground();
+        return background instanceof FabBackgroundDrawable ? (FabBackgroundDrawable) background : null;
     }
 
-    private Drawable createInnerStrokesDrawable(final int color, float strokeWidth) {
-        if (!mStrokeVisible) {
-            return new ColorDrawable(Color.TRANSPARENT);
+    private void scheduleBackgroundRebuild() {
+        if (mBackgroundDirty && mAttachedToWindow && !mBackgroundRebuildScheduled) {
+            getViewTreeObserver().addOnPreDrawListener(mBackgroundRebuildListener);
+            mBackgroundRebuildScheduled = true;
+            invalidate();
+        }
+    }
+
+    private void unscheduleBackgroundRebuild() {
+        if (mBackgroundRebuildScheduled) {
+            getViewTreeObserver().removeOnPreDrawListener(mBackgroundRebuildListener);
+            mBackgroundRebuildScheduled = false;
         }
+    }
 
-        ShapeDrawable shapeDrawable = new ShapeDrawable(new OvalShape());
-
-        final int bottomStrokeColor = darkenColor(color);
-        final int bottomStrokeColorHalfTransparent = halfTransparent(bottomStrokeColor);
-        final int topStrokeColor = lightenColor(color);
-        final int topStrokeColorHalfTransparent = halfTransparent(topStrokeColor);
-
-        final Paint paint = shapeDrawable.getPaint();
-        paint.setAntiAlias(true);
-        paint.setStrokeWidth(strokeWidth);
-        paint.setStyle(Style.STROKE);
-        shapeDrawable.setShaderFactory(new ShaderFactory() {
-            @Override
-            public Shader resize(int width, int height) {
-                return new LinearGradient(width / 2, 0, width / 2, height,
-                        new int[]{topStrokeColor, topStrokeColorHalfTransparent, color, bottomStrokeColorHalfTransparent, bottomStrokeColor},
-                        new float[]{0f, 0.2f, 0.5f, 0.8f, 1f},
-                        TileMode.CLAMP
-                );
+    void rebuildBackgroundIfNeeded() {
+        if (!mBackgroundDirty) {
+            return;
+        }
+        mBackgroundDirty = false;
+
+        FabBackgroundCache.Key key = getBackgroundCacheKey();
+        Drawable background = key != null ? FabBackgroundCache.get(key, getResources()) : null;
+        if (background == null) {
+            background = createBackground();
+            if (key != null) {
+                FabBackgroundCache.put(key, background);
             }
-        });
+        }
 
-        return shapeDrawable;
+        setBackgroundCompat(background);
+        updateTranslucentLayerType();
     }
 
-    private void setBackgroundCompat(Drawable drawable) {
-        if (Build.VERSION.SDK_INT >= VERSION_CODES.JELLY_BEAN) {
-            setBackground(drawable);
-        } else {
-            setBackgroundDrawable(drawable);
+    private void updateTranslucentLayerType() {
+        boolean useLayer = mTranslucentMode == TRANSLUCENT_MODE_HARDWARE_LAYER && mStrokeVisible
+                && (Color.alpha(mColorNormal) != 255 || Color.alpha(mColorPressed) != 255 || Color.alpha(mColorDisabled) != 255);
+
+        if (useLayer != mTranslucentLayerApplied) {
+            mTranslucentLayerApplied = useLayer;
+            setLayerType(useLayer ? LAYER_TYPE_HARDWARE : LAYER_TYPE_NONE, null);
         }
     }
 
-    Drawable getIconDrawable() {
+    /**
+     * @return the key identifying this button's background in the {@link FabBackgroundCache}, or null
+     * if the background can't be shared with other buttons.
+     */
+    FabBackgroundCache.Key getBackgroundCacheKey() {
         if (mIconDrawable != null) {
-            return getTintedDrawable(mIconDrawable);
-        } else if (mIcon != 0) {
-            return getTintedDrawable(mIcon);
-        } else {
-            return new ColorDrawable(Color.TRANSPARENT);
+            // Arbitrary icon drawables can't be identified, so they can't be shared either
+            return null;
         }
+
+        return createBackgroundCacheKey(mIcon, mIconTintColor);
     }
 
-    public void setIconDrawable(@NonNull Drawable iconDrawable) {
-        if (mIconDrawable != iconDrawable) {
-            mIcon = 0;
-            mIconDrawable = iconDrawable;
-            updateBackground();
-        }
+    final FabBackgroundCache.Key createBackgroundCacheKey(int icon, int iconColor) {
+        return new FabBackgroundCache.Key(getClass(), mSize, mColorNormal, mColorPressed, mColorDisabled, mStrokeVisible,
+                icon, iconColor, getResources().getDisplayMetrics().density, mMetrics, mTranslucentMode,
+                mShadowRadius, mShadowOffset, mShadowColor);
     }
 
-    float getDimension(@DimenRes int id) {
-        return getResources().getDimension(id);
+    private Drawable getShadowDrawable() {
+        if (mShadowColor == 0 && mShadowRadius == mMetrics.shadowRadius && mShadowOffset == mMetrics.shadowOffset) {
+            return FabShadowCache.getShadow(getResources(),
+                    mSize == SIZE_NORMAL ? R.drawable.bg_fab_shadow_normal : R.drawable.bg_fab_shadow_mini, mCircleSize);
+        }
+
+        return FabShadowCache.getShadow(getResources(), mCircleSize, mShadowRadius,
+                mShadowColor != 0 ? mShadowColor : FabShadowCache.DEFAULT_SHADOW_COLOR);
     }
 
-    int getColor(@ColorRes int id) {
-        return getResources().getColor(id);
+    private Drawable createBackground() {
+        return new FabBackgroundDrawable(
+                getShadowDrawable(),
+                getIconDrawable(),
+                mColorNormal,
+                mColorPressed,
+                mColorDisabled,
+                mStrokeVisible,
+                mCircleSize,
+                mMetrics.iconSize,
+                mMetrics.strokeWidth,
+                mShadowRadius,
+                mShadowOffset,
+                mTranslucentMode == TRANSLUCENT_MODE_PREMULTIPLIED);
     }
 
-    CardView getCardView() {
-        return (CardView) getTag(R.id.fab_card_label);
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({SIZE_NORMAL, SIZE_MINI})
+    public @interface FAB_SIZE {
     }
 
-    void updateBackground() {
-        final float strokeWidth = getDimension(R.dimen.fab_stroke_width);
-        final float halfStrokeWidth = strokeWidth / 2f;
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({TRANSLUCENT_MODE_LAYER, TRANSLUCENT_MODE_PREMULTIPLIED, TRANSLUCENT_MODE_HARDWARE_LAYER})
+    public @interface TRANSLUCENT_MODE {
+    }
 
-        LayerDrawable layerDrawable = new LayerDrawable(
-                new Drawable[]{
-                        getResources().getDrawable(mSize == SIZE_NORMAL ? R.drawable.bg_fab_shadow_normal : R.drawable.bg_fab_shadow_mini),
-                        createFillDrawable(strokeWidth),
-                        createOuterStrokeDrawable(strokeWidth),
-                        getIconDrawable()
-                });
+    /**
+     * Collects changes to a {@link FloatingActionButton} so they cause a single background rebuild
+     * once {@link #apply()} is called. Only the properties that were set are changed. Colors and
+     * icons are changed in place on the current background unless the size or stroke changes too.
+     */
+    public class Editor {
+        private static final int CHANGED_COLOR_NORMAL = 1;
+        private static final int CHANGED_COLOR_PRESSED = 1 << 1;
+        private static final int CHANGED_COLOR_DISABLED = 1 << 2;
+        private static final int CHANGED_STROKE_VISIBLE = 1 << 3;
+        private static final int CHANGED_SIZE = 1 << 4;
+        private static final int CHANGED_ICON = 1 << 5;
+        private static final int CHANGED_ICON_TINT_COLOR = 1 << 6;
+        private static final int CHANGED_TITLE = 1 << 7;
+
+        private int mChanges;
+        private int mColorNormal;
+        private int mColorPressed;
+        private int mColorDisabled;
+        private boolean mStrokeVisible;
+        private int mSize;
+        private int mIcon;
+        private int mIconTintColor;
+        private String mTitle;
+
+        Editor() {
+        }
 
-        int iconOffset = (int) (mCircleSize - getDimension(R.dimen.fab_icon_size)) / 2;
+        public Editor setColorNormal(int color) {
+            mColorNormal = color;
+            mChanges |= CHANGED_COLOR_NORMAL;
+            return this;
+        }
 
-        int circleInsetHorizontal = (int) (mShadowRadius);
-        int circleInsetTop = (int) (mShadowRadius - mShadowOffset);
-        int circleInsetBottom = (int) (mShadowRadius + mShadowOffset);
+        public Editor setColorPressed(int color) {
+            mColorPressed = color;
+            mChanges |= CHANGED_COLOR_PRESSED;
+            return this;
+        }
 
-        layerDrawable.setLayerInset(1,
-                circleInsetHorizontal,
-                circleInsetTop,
-                circleInsetHorizontal,
-                circleInsetBottom);
+        public Editor setColorDisabled(int color) {
+            mColorDisabled = color;
+            mChanges |= CHANGED_COLOR_DISABLED;
+            return this;
+        }
 
-        layerDrawable.setLayerInset(2,
-                (int) (circleInsetHorizontal - halfStrokeWidth),
-                (int) (circleInsetTop - halfStrokeWidth),
-                (int) (circleInsetHorizontal - halfStrokeWidth),
-                (int) (circleInsetBottom - halfStrokeWidth));
+        public Editor setStrokeVisible(boolean visible) {
+            mStrokeVisible = visible;
+            mChanges |= CHANGED_STROKE_VISIBLE;
+            return this;
+        }
 
-        layerDrawable.setLayerInset(3,
-                circleInsetHorizontal + iconOffset,
-                circleInsetTop + iconOffset,
-                circleInsetHorizontal + iconOffset,
-                circleInsetBottom + iconOffset);
+        public Editor setSize(@FAB_SIZE int size) {
+            mSize = size;
+            mChanges |= CHANGED_SIZE;
+            return this;
+        }
 
-        setBackgroundCompat(layerDrawable);
-    }
+        public Editor setIcon(@DrawableRes int icon) {
+            mIcon = icon;
+            mChanges |= CHANGED_ICON;
+            return this;
+        }
 
-    @Retention(RetentionPolicy.SOURCE)
-    @IntDef({SIZE_NORMAL, SIZE_MINI})
-    public @interface FAB_SIZE {
-    }
+        public Editor setIconTintColor(int color) {
+            mIconTintColor = color;
+            mChanges |= CHANGED_ICON_TINT_COLOR;
+            return this;
+        }
 
-    private static class TranslucentLayerDrawable extends LayerDrawable {
-        private final int mAlpha;
+        /**
+         * Sets the title, which only updates the text of the label unless its size changes.
+         */
+        public Editor setTitle(String title) {
+            mTitle = title;
+            mChanges |= CHANGED_TITLE;
+            return this;
+        }
 
-        public TranslucentLayerDrawable(int alpha, Drawable... layers) {
-            super(layers);
-            mAlpha = alpha;
+        /**
+         * Applies all collected changes, rebuilding the background at most once.
+         *
+         * @return the number of background rebuilds saved compared to applying each change on its own.
+         */
+        public int apply() {
+            beginBatchedUpdates();
+            applyChanges();
+            mChanges = 0;
+            return endBatchedUpdates();
         }
 
-        @Override
-        public void draw(Canvas canvas) {
-            Rect bounds = getBounds();
-            canvas.saveLayerAlpha(bounds.left, bounds.top, bounds.right, bounds.bottom, mAlpha, Canvas.ALL_SAVE_FLAG);
-            super.draw(canvas);
-            canvas.restore();
+        void applyChanges() {
+            // Changes that need a new background go first, so the others don't update the old one
+            if ((mChanges & CHANGED_SIZE) != 0) {
+                FloatingActionButton.this.setSize(mSize);
+            }
+            if ((mChanges & CHANGED_STROKE_VISIBLE) != 0) {
+                FloatingActionButton.this.setStrokeVisible(mStrokeVisible);
+            }
+            if ((mChanges & CHANGED_COLOR_NORMAL) != 0) {
+                FloatingActionButton.this.setColorNormal(mColorNormal);
+            }
+            if ((mChanges & CHANGED_COLOR_PRESSED) != 0) {
+                FloatingActionButton.this.setColorPressed(mColorPressed);
+            }
+            if ((mChanges & CHANGED_COLOR_DISABLED) != 0) {
+                FloatingActionButton.this.setColorDisabled(mColorDisabled);
+            }
+            if ((mChanges & CHANGED_ICON) != 0) {
+                FloatingActionButton.this.setIcon(mIcon);
+            }
+            if ((mChanges & CHANGED_ICON_TINT_COLOR) != 0) {
+                FloatingActionButton.this.setIconTintColor(mIconTintColor);
+            }
+            if ((mChanges & CHANGED_TITLE) != 0) {
+                FloatingActionButton.this.setTitle(mTitle);
+            }
         }
     }
 
@@ -18,33 +18,56 @@
 
 package com.github.gfranks.fab.menu;
 
-import android.animation.AnimatorSet;
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
 import android.animation.ObjectAnimator;
+import android.animation.ValueAnimator;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.drawable.Drawable;
-import android.graphics.drawable.LayerDrawable;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.support.annotation.ColorRes;
+import android.support.annotation.IdRes;
+import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
+import android.support.v4.view.ViewCompat;
 import android.support.v7.widget.CardView;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.util.TypedValue;
 import android.view.ContextThemeWrapper;
 import android.view.Gravity;
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
 import android.view.View;
+import android.view.ViewConfiguration;
 import android.view.ViewGroup;
-import android.view.animation.AlphaAnimation;
-import android.view.animation.Animation;
-import android.view.animation.AnimationUtils;
+import android.view.ViewParent;
+import android.view.animation.AccelerateInterpolator;
 import android.view.animation.DecelerateInterpolator;
 import android.view.animation.Interpolator;
 import android.view.animation.LinearInterpolator;
 import android.view.animation.OvershootInterpolator;
+import android.widget.OverScroller;
 import android.widget.TextView;
 
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 public class FloatingActionsMenu extends ViewGroup implements View.OnLongClickListener {
 
     public static final int EXPAND_UP = 0;
@@ -52,42 +75,144 @@ public class FloatingActionsMenu extends ViewGroup implements View.OnLongClickLi
     public static final int EXPAND_LEFT = 2;
     public static final int EXPAND_RIGHT = 3;
 
+    /**
+     * Animating buttons and labels keep their own layer types.
+     */
+    public static final int LAYER_POLICY_NEVER = 0;
+    /**
+     * Animating buttons and labels are rendered into hardware layers, so each frame only composites
+     * them with a new translation and alpha instead of redrawing their shadows and strokes.
+     */
+    public static final int LAYER_POLICY_ALWAYS = 1;
+    /**
+     * Hardware layers are only used when enough views animate to outweigh building the layers.
+     */
+    public static final int LAYER_POLICY_AUTO = 2;
+
     private static final int DEFAULT_LABEL_HORIZONTAL_PADDING = 25;
     private static final int DEFAULT_LABEL_VERTICAL_PADDING = 15;
     private static final int DEFAULT_LABEL_MIN_WIDTH = 115;
+    private static final int DEFAULT_LABEL_TEXT_SIZE = 14;
+    private static final int FLAT_LABEL_CORNER_RADIUS = 2;
+    private static final int FLAT_LABEL_SHADOW_OFFSET = 1;
+    private static final int FLAT_LABEL_SHADOW_RADIUS = 2;
+    // Start color of the compat CardView shadow
+    private static final int FLAT_LABEL_SHADOW_COLOR = 0x37000000;
 
-    private static final int DISPLAY_HELP_LABELS_IN_HORIZONTAL_MODE_OFFSET = 60;
     private static final int ANIMATION_DURATION = 300;
-    private AnimatorSet mExpandAnimation = new AnimatorSet().setDuration(ANIMATION_DURATION);
-    private AnimatorSet mCollapseAnimation = new AnimatorSet().setDuration(ANIMATION_DURATION);
-    private static final float COLLAPSED_PLUS_ROTATION = 0f;
-    private static final float EXPANDED_PLUS_ROTATION = 90f + 45f;
-    private static Interpolator sExpandInterpolator = new DecelerateInterpolator(3f);
-    private static Interpolator sCollapseInterpolator = new DecelerateInterpolator(3f);
-    private static Interpolator sAlphaExpandInterpolator = new DecelerateInterpolator();
+    private static final int OVERSHOOT_SAMPLES = 256;
+    private static final int AUTO_LAYER_MIN_VIEWS = 4;
+    private static final int SLIDE_DURATION = 400;
+    private static final float SLIDE_DISTANCE_FRACTION = 0.5f;
+    private final ValueAnimator mAnimator = ValueAnimator.ofFloat(0f, 1f);
+    private boolean mAnimatingExpansion;
+    private Interpolator mIconInterpolator;
+    private float mRunScale = 1f;
+    private float mIconStart;
+    private float[] mSlotStartRemaining = new float[0];
+    private float[] mSlotStartAlpha = new float[0];
+    private float[] mSlotStartVelocity = new float[0];
+    private float[] mSlotDelay = new float[0];
+    private float mIconStartVelocity;
+    private boolean mSeeking;
+    private float mExpansionProgress;
+    private float mFrameRemaining;
+    private float mFrameAlpha;
+    private float mFrameVelocity;
+    private final SpringSolver mSpring = new SpringSolver();
+    private boolean mUseSpring;
+    private Interpolator mExpandInterpolator;
+    private Interpolator mCollapseInterpolator = new DecelerateInterpolator(3f);
+    private Interpolator mAlphaExpandInterpolator = new DecelerateInterpolator();
+    private int mStaggerDelay;
+    private View[] mAnimatedViews = new View[0];
+    private float[] mAnimatedTranslations = new float[0];
+    private int[] mAnimatedSlots = new int[0];
+    private int mAnimatedCount;
+    private int mLayerPolicy;
+    private View[] mLayeredViews = new View[0];
+    private int[] mLayeredViewTypes = new int[0];
+    private int mLayeredCount;
+    private boolean mRestartingAnimation;
     private int mAddButtonPlusColor;
     private int mAddButtonColorNormal;
     private int mAddButtonColorPressed;
     private int mAddButtonSize;
     private boolean mAddButtonStrokeVisible;
-    private int mExpandDirection;
+    private MenuLayoutStrategy mLayoutStrategy;
+    private float[] mButtonSizes = new float[0];
+    private float[] mLabelSizes = new float[0];
+    private float[] mCollapsedPositions = new float[0];
+    private float[] mExpandedPositions = new float[0];
+    private int mPositionsCount;
+    private float mBoundsLeft;
+    private float mBoundsTop;
+    private float mBoundsRight;
+    private float mBoundsBottom;
+    private float mLabelsRight;
+    private float mOvershoot;
+    private final Rect mAnimationBounds = new Rect();
+    private FabMetrics mMetrics;
     private int mButtonSpacing;
     private int mLabelsMargin;
     private int mLabelsVerticalOffset;
     private boolean mExpanded;
     private AddFloatingActionButton mAddButton;
-    private RotatingDrawable mRotatingDrawable;
-    private int mMaxButtonWidth;
-    private int mMaxButtonHeight;
+    private PlusIconDrawable mPlusIcon;
     private int mLabelsStyle;
     private int mLabelsTextColor;
     private int mCardBackgroundColor;
     private int mButtonsCount;
+    private int mLayoutGeneration;
+    private int mChildSetVersion;
+    private int mMeasureVersion = -1;
+    private int mMeasureWidthSpec;
+    private int mMeasureHeightSpec;
+    private int mCachedMeasuredWidth;
+    private int mCachedMeasuredHeight;
+    private int mCachedVisibleCount;
+    private int mLayoutSkippedCount;
+    private int mLayoutRecomputedCount;
     private boolean mCloseOnItemClick;
     private boolean mIsSlidOut;
+    private ObjectAnimator mSlideAnimator;
+    private boolean mSlidingOut;
+    private boolean mSlideCanceled;
+    private final Interpolator mSlideInInterpolator = new DecelerateInterpolator();
+    private final Interpolator mSlideOutInterpolator = new AccelerateInterpolator();
     private boolean mBounceWhenExpanding;
     private boolean mDisplayHelpLabelsInHorizontalMode;
+    private final LabelTooltipController mLabelTooltips = new LabelTooltipController(this);
+    private boolean mFlattenLabels;
+    private TextPaint mLabelTextPaint;
+    private Paint mLabelBackgroundPaint;
+    private Paint mLabelShadowPaint;
+    private final RectF mLabelRect = new RectF();
+    private int mFlatLabelTextColor;
+    private int mFlatLabelMinWidth;
+    private float mFlatLabelCornerRadius;
+    private float mFlatLabelShadowOffset;
+    private Bitmap mFlatLabelShadow;
+    private int mFlatLabelShadowInset;
+    private final Rect mShadowSource = new Rect();
+    private final RectF mShadowTarget = new RectF();
+    private FloatingActionButton mPressedLabelButton;
     private OnFloatingActionsMenuUpdateListener mListener;
+    private Context mLabelContext;
+
+    private Adapter mAdapter;
+    private final ArrayList<FloatingActionButton> mRecycledButtons = new ArrayList<FloatingActionButton>();
+    private int mAdapterScroll;
+    private int mAdapterMaxScroll;
+    private int mAdapterPitch;
+    private int mAdapterLength;
+    private OverScroller mScroller;
+    private VelocityTracker mVelocityTracker;
+    private int mTouchSlop;
+    private int mMinimumFlingVelocity;
+    private int mMaximumFlingVelocity;
+    private float mLastTouchPosition;
+    private boolean mScrolling;
 
     public FloatingActionsMenu(Context context) {
         this(context, null);
@@ -104,9 +229,7 @@ public class FloatingActionsMenu extends ViewGroup implements View.OnLongClickLi
     }
 
     private void init(Context context, AttributeSet attributeSet) {
-        mButtonSpacing = (int) (getResources().getDimension(R.dimen.fab_actions_spacing) - getResources().getDimension(R.dimen.fab_shadow_radius) - getResources().getDimension(R.dimen.fab_shadow_offset));
-        mLabelsMargin = getResources().getDimensionPixelSize(R.dimen.fab_labels_margin);
-        mLabelsVerticalOffset = getResources().getDimensionPixelSize(R.dimen.fab_shadow_offset);
+        updateMetrics();
 
         TypedArray attr = context.obtainStyledAttributes(attributeSet, R.styleable.FloatingActionsMenu, 0, 0);
         mAddButtonPlusColor = attr.getColor(R.styleable.FloatingActionsMenu_fab_addButtonPlusIconColor, getColor(android.R.color.white));
@@ -114,207 +237,413 @@ public class FloatingActionsMenu extends ViewGroup implements View.OnLongClickLi
         mAddButtonColorPressed = attr.getColor(R.styleable.FloatingActionsMenu_fab_addButtonColorPressed, getColor(android.R.color.holo_blue_light));
         mAddButtonSize = attr.getInt(R.styleable.FloatingActionsMenu_fab_addButtonSize, FloatingActionButton.SIZE_NORMAL);
         mAddButtonStrokeVisible = attr.getBoolean(R.styleable.FloatingActionsMenu_fab_addButtonStrokeVisible, true);
-        mExpandDirection = attr.getInt(R.styleable.FloatingActionsMenu_fab_expandDirection, EXPAND_UP);
+        mLayoutStrategy = new LinearMenuLayoutStrategy(attr.getInt(R.styleable.FloatingActionsMenu_fab_expandDirection, EXPAND_UP));
         mLabelsStyle = attr.getResourceId(R.styleable.FloatingActionsMenu_fab_labelStyle, 0);
         mLabelsTextColor = attr.getColor(R.styleable.FloatingActionsMenu_fab_labelTextColor, 0);
         mCardBackgroundColor = attr.getColor(R.styleable.FloatingActionsMenu_fab_cardBackgroundColor, getColor(android.R.color.white));
         mCloseOnItemClick = attr.getBoolean(R.styleable.FloatingActionsMenu_fab_closeOnItemClick, false);
         mBounceWhenExpanding = attr.getBoolean(R.styleable.FloatingActionsMenu_fab_bounceWhenExpanding, false);
         mDisplayHelpLabelsInHorizontalMode = attr.getBoolean(R.styleable.FloatingActionsMenu_fab_displayHelpLabelsInHorizontalMode, false);
+        mFlattenLabels = attr.getBoolean(R.styleable.FloatingActionsMenu_fab_flattenLabels, false);
+        mLayerPolicy = attr.getInt(R.styleable.FloatingActionsMenu_fab_animationLayerPolicy, LAYER_POLICY_AUTO);
+        final float springStiffness = attr.getFloat(R.styleable.FloatingActionsMenu_fab_springStiffness, 0f);
+        final float springDampingRatio = attr.getFloat(R.styleable.FloatingActionsMenu_fab_springDampingRatio, 1f);
         attr.recycle();
 
+        if (mFlattenLabels) {
+            initFlatLabels(context);
+        }
+
         if (mBounceWhenExpanding) {
-            sExpandInterpolator = new OvershootInterpolator();
+            mExpandInterpolator = new OvershootInterpolator();
         } else {
-            sExpandInterpolator = new DecelerateInterpolator(3f);
+            mExpandInterpolator = new DecelerateInterpolator(3f);
         }
+        if (springStiffness > 0f) {
+            mSpring.setParameters(springStiffness, springDampingRatio);
+            mUseSpring = true;
+        }
+        updateOvershoot();
         createAddButton(context);
+        createSlideAnimator();
+
+        ViewConfiguration configuration = ViewConfiguration.get(context);
+        mTouchSlop = configuration.getScaledTouchSlop();
+        mMinimumFlingVelocity = configuration.getScaledMinimumFlingVelocity();
+        mMaximumFlingVelocity = configuration.getScaledMaximumFlingVelocity();
+    }
+
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+
+        if (FabMetrics.get(getResources()) != mMetrics) {
+            updateMetrics();
+            requestLayout();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        mLabelTooltips.cancel();
+        super.onDetachedFromWindow();
     }
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        measureChildren(widthMeasureSpec, heightMeasureSpec);
+        if (isMeasureCacheValid(widthMeasureSpec, heightMeasureSpec)) {
+            setMeasuredDimension(mCachedMeasuredWidth, mCachedMeasuredHeight);
+            return;
+        }
 
-        int width = 0;
-        int height = 0;
+        if (mAdapter != null) {
+            updateAdapterWindow(widthMeasureSpec, heightMeasureSpec);
+        }
 
-        mMaxButtonWidth = 0;
-        mMaxButtonHeight = 0;
-        int maxLabelWidth = 0;
+        final boolean showsLabels = mLayoutStrategy.showsLabels();
+        final boolean helpLabels = expandsHorizontally() && mDisplayHelpLabelsInHorizontalMode;
 
-        for (int i = 0; i < mButtonsCount; i++) {
+        measureChild(mAddButton, widthMeasureSpec, heightMeasureSpec);
+        final float addButtonWidth = mAddButton.getMeasuredWidth();
+        final float addButtonHeight = mAddButton.getMeasuredHeight();
+
+        ensurePositionsCapacity(mButtonsCount);
+        int count = 0;
+        boolean hasLabels = false;
+        int maxHelpLabelWidth = 0;
+
+        // The strategy gets the buttons from the one closest to the add button
+        for (int i = mButtonsCount - 1; i >= 0; i--) {
             View child = getChildAt(i);
 
-            if (child.getVisibility() == GONE) {
+            if (child == mAddButton || child.getVisibility() == GONE) {
                 continue;
             }
 
-            switch (mExpandDirection) {
-                case EXPAND_UP:
-                case EXPAND_DOWN:
-                    mMaxButtonWidth = Math.max(mMaxButtonWidth, child.getMeasuredWidth());
-                    height += child.getMeasuredHeight();
-                    break;
-                case EXPAND_LEFT:
-                case EXPAND_RIGHT:
-                    width += child.getMeasuredWidth();
-                    mMaxButtonHeight = Math.max(mMaxButtonHeight, child.getMeasuredHeight());
-                    break;
-            }
+            measureChild(child, widthMeasureSpec, heightMeasureSpec);
+            mButtonSizes[2 * count] = child.getMeasuredWidth();
+            mButtonSizes[2 * count + 1] = child.getMeasuredHeight();
+            mLabelSizes[2 * count] = 0f;
+            mLabelSizes[2 * count + 1] = 0f;
+
+            if (showsLabels) {
+                FlatLabel flatLabel = (FlatLabel) child.getTag(R.id.fab_flat_label);
+                if (flatLabel != null) {
+                    measureFlatLabel(flatLabel, ((FloatingActionButton) child).getTitle());
+                    // The shadow spreads around the label and is moved down by its offset
+                    mLabelSizes[2 * count] = flatLabel.mWidth + mFlatLabelShadowInset;
+                    mLabelSizes[2 * count + 1] = flatLabel.mHeight + 2 * (mFlatLabelShadowOffset + mFlatLabelShadowInset);
+                }
 
-            if (!expandsHorizontally()) {
                 CardView cardView = (CardView) child.getTag(R.id.fab_card_label);
-                if (cardView != null) {
-                    maxLabelWidth = Math.max(maxLabelWidth, cardView.getMeasuredWidth());
+                if (cardView != null && cardView.getVisibility() != GONE) {
+                    measureChild(cardView, widthMeasureSpec, heightMeasureSpec);
+                    mLabelSizes[2 * count] = Math.max(mLabelSizes[2 * count], cardView.getMeasuredWidth());
+                    mLabelSizes[2 * count + 1] = Math.max(mLabelSizes[2 * count + 1], cardView.getMeasuredHeight());
                 }
-            } else {
-                if (mDisplayHelpLabelsInHorizontalMode) {
-                    CardView cardView = (CardView) child.getTag(R.id.fab_card_label);
-                    if (cardView != null) {
-                        mMaxButtonHeight = Math.max(mMaxButtonHeight, child.getMeasuredHeight() + cardView.getMeasuredHeight() + DISPLAY_HELP_LABELS_IN_HORIZONTAL_MODE_OFFSET);
-                    }
+                hasLabels |= mLabelSizes[2 * count] > 0f;
+            } else if (helpLabels) {
+                CardView cardView = (CardView) child.getTag(R.id.fab_card_label);
+                if (cardView != null) {
+                    // Help labels are gone until long pressed, but the menu reserves room for them
+                    measureChild(cardView, widthMeasureSpec, heightMeasureSpec);
+                    maxHelpLabelWidth = Math.max(maxHelpLabelWidth, cardView.getMeasuredWidth());
                 }
             }
+            count++;
         }
 
-        if (!expandsHorizontally()) {
-            width = mMaxButtonWidth + (maxLabelWidth > 0 ? maxLabelWidth + mLabelsMargin : 0);
-        } else {
-            height = mMaxButtonHeight;
+        mPositionsCount = count;
+        mLayoutStrategy.computePositions(count, mButtonSizes, addButtonWidth, addButtonHeight, mButtonSpacing,
+                mCollapsedPositions, mExpandedPositions);
+
+        // Bounds of everything the animations draw, relative to the center of the add button. The
+        // buttons travel from their collapsed positions to past their expanded ones, by as much as
+        // the expand interpolator overshoots.
+        float left = -addButtonWidth / 2f;
+        float top = -addButtonHeight / 2f;
+        float right = addButtonWidth / 2f;
+        float bottom = addButtonHeight / 2f;
+        float expandedLeft = left;
+        for (int i = 0; i < count; i++) {
+            final float x = mExpandedPositions[2 * i];
+            final float y = mExpandedPositions[2 * i + 1];
+            final float halfWidth = mButtonSizes[2 * i] / 2f;
+            final float halfHeight = mButtonSizes[2 * i + 1] / 2f;
+
+            left = Math.min(left, x + getMinMotion(i, 0) - halfWidth);
+            top = Math.min(top, y + getMinMotion(i, 1) - halfHeight);
+            right = Math.max(right, x + getMaxMotion(i, 0) + halfWidth);
+            bottom = Math.max(bottom, y + getMaxMotion(i, 1) + halfHeight);
+            expandedLeft = Math.min(expandedLeft, x - halfWidth);
         }
 
-        switch (mExpandDirection) {
-            case EXPAND_UP:
-            case EXPAND_DOWN:
-                height += mButtonSpacing * (getChildCount() - 1);
-                height = adjustForOvershoot(height);
-                break;
-            case EXPAND_LEFT:
-            case EXPAND_RIGHT:
-                width += mButtonSpacing * (getChildCount() - 1);
-                width = adjustForOvershoot(width);
-                break;
+        mLabelsRight = expandedLeft - mLabelsMargin;
+        for (int i = 0; hasLabels && i < count; i++) {
+            final float labelWidth = mLabelSizes[2 * i];
+            if (labelWidth == 0f) {
+                continue;
+            }
+
+            // Labels are vertically centered on their buttons, raised by the shadow offset
+            final float labelCenterY = mExpandedPositions[2 * i + 1] - mLabelsVerticalOffset;
+            final float labelHalfHeight = mLabelSizes[2 * i + 1] / 2f;
+            left = Math.min(left, mLabelsRight - labelWidth + getMinMotion(i, 0));
+            top = Math.min(top, labelCenterY + getMinMotion(i, 1) - labelHalfHeight);
+            right = Math.max(right, mLabelsRight + getMaxMotion(i, 0));
+            bottom = Math.max(bottom, labelCenterY + getMaxMotion(i, 1) + labelHalfHeight);
         }
 
-        setMeasuredDimension(width, height);
-    }
+        if (maxHelpLabelWidth > 0) {
+            // Help labels are shifted up and left from their buttons by a quarter of their width
+            left -= maxHelpLabelWidth / 4f;
+            top = Math.min(top, -addButtonHeight / 2f - maxHelpLabelWidth / 4f);
+        }
 
-    @Override
-    protected void onLayout(boolean changed, int l, int t, int r, int b) {
-        switch (mExpandDirection) {
-            case EXPAND_UP:
-            case EXPAND_DOWN:
-                boolean expandUp = mExpandDirection == EXPAND_UP;
+        int width = (int) Math.ceil(right - left);
+        int height = (int) Math.ceil(bottom - top);
 
-                int addButtonY = expandUp ? b - t - mAddButton.getMeasuredHeight() : 0;
-                // Ensure mAddButton is centered on the line where the buttons should be
-                int addButtonLeft = r - l - mMaxButtonWidth + (mMaxButtonWidth - mAddButton.getMeasuredWidth()) / 2;
-                mAddButton.layout(addButtonLeft, addButtonY, addButtonLeft + mAddButton.getMeasuredWidth(), addButtonY + mAddButton.getMeasuredHeight());
+        if (mAdapter != null && mAdapterLength >= 0) {
+            // The expanded stack scrolls, so the menu only spans the buttons that fit
+            if (expandsHorizontally()) {
+                width = mAdapterLength;
+            } else {
+                height = mAdapterLength;
+            }
+        }
 
-                int labelsRight = r - l - mMaxButtonWidth - mLabelsMargin;
+        mBoundsLeft = left;
+        mBoundsTop = top;
+        mBoundsRight = right;
+        mBoundsBottom = bottom;
+        setMeasuredDimension(width, height);
 
-                int nextY = expandUp ?
-                        addButtonY - mButtonSpacing :
-                        addButtonY + mAddButton.getMeasuredHeight() + mButtonSpacing;
+        mMeasureWidthSpec = widthMeasureSpec;
+        mMeasureHeightSpec = heightMeasureSpec;
+        mMeasureVersion = mChildSetVersion;
+        mCachedMeasuredWidth = width;
+        mCachedMeasuredHeight = height;
+        mCachedVisibleCount = getVisibleChildCount();
+    }
 
-                for (int i = mButtonsCount - 1; i >= 0; i--) {
-                    final View child = getChildAt(i);
+    /**
+     * @return the smallest offset from its expanded position the button at the given position takes
+     * while animating, along the given axis (0 for x, 1 for y).
+     */
+    private float getMinMotion(int position, int axis) {
+        final float travel = mCollapsedPositions[2 * position + axis] - mExpandedPositions[2 * position + axis];
+        return Math.min(0f, Math.min(travel, -travel * mOvershoot));
+    }
 
-                    if (child == mAddButton || child.getVisibility() == GONE) continue;
+    /**
+     * @return the largest offset from its expanded position the button at the given position takes
+     * while animating, along the given axis (0 for x, 1 for y).
+     */
+    private float getMaxMotion(int position, int axis) {
+        final float travel = mCollapsedPositions[2 * position + axis] - mExpandedPositions[2 * position + axis];
+        return Math.max(0f, Math.max(travel, -travel * mOvershoot));
+    }
 
-                    int childX = addButtonLeft + (mAddButton.getMeasuredWidth() - child.getMeasuredWidth()) / 2;
-                    int childY = expandUp ? nextY - child.getMeasuredHeight() : nextY;
-                    child.layout(childX, childY, childX + child.getMeasuredWidth(), childY + child.getMeasuredHeight());
+    private void ensurePositionsCapacity(int count) {
+        if (mButtonSizes.length < 2 * count) {
+            mButtonSizes = new float[2 * count];
+            mLabelSizes = new float[2 * count];
+            mCollapsedPositions = new float[2 * count];
+            mExpandedPositions = new float[2 * count];
+        }
+    }
 
-                    float collapsedTranslation = addButtonY - childY;
-                    float expandedTranslation = 0f;
+    /**
+     * @return true if the last measurement was made with the same specs and children and none of the
+     * children requested a layout since, so it can be reused as is.
+     */
+    private boolean isMeasureCacheValid(int widthMeasureSpec, int heightMeasureSpec) {
+        if (mMeasureVersion != mChildSetVersion
+                || mMeasureWidthSpec != widthMeasureSpec
+                || mMeasureHeightSpec != heightMeasureSpec) {
+            return false;
+        }
 
-                    child.setTranslationY(mExpanded ? expandedTranslation : collapsedTranslation);
-                    child.setAlpha(mExpanded ? 1f : 0f);
+        // Size changes of the buttons and labels are signalled through requestLayout. GONE children
+        // are never laid out, so their request stays pending and is ignored, and hiding a child is
+        // caught by the visible count instead.
+        int visibleCount = 0;
+        for (int i = 0, count = getChildCount(); i < count; i++) {
+            final View child = getChildAt(i);
+            if (child.getVisibility() == GONE) {
+                continue;
+            }
+            if (child.isLayoutRequested()) {
+                return false;
+            }
+            visibleCount++;
+        }
+        return visibleCount == mCachedVisibleCount;
+    }
 
-                    LayoutParams params = (LayoutParams) child.getLayoutParams();
-                    params.mCollapseDir.setFloatValues(expandedTranslation, collapsedTranslation);
-                    params.mExpandDir.setFloatValues(collapsedTranslation, expandedTranslation);
-                    params.setAnimationsTarget(child);
+    private int getVisibleChildCount() {
+        int visibleCount = 0;
+        for (int i = 0, count = getChildCount(); i < count; i++) {
+            if (getChildAt(i).getVisibility() != GONE) {
+                visibleCount++;
+            }
+        }
+        return visibleCount;
+    }
 
-                    View label = (View) child.getTag(R.id.fab_card_label);
-                    if (label != null) {
-                        int labelLeft = labelsRight - label.getMeasuredWidth();
-                        int labelTop = childY - mLabelsVerticalOffset + (child.getMeasuredHeight() - label.getMeasuredHeight()) / 2;
+    private void invalidateMeasureCache() {
+        mChildSetVersion++;
+    }
 
-                        label.layout(labelLeft, labelTop, labelsRight, labelTop + label.getMeasuredHeight());
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        final boolean showsLabels = mLayoutStrategy.showsLabels();
+        final boolean helpLabels = expandsHorizontally() && mDisplayHelpLabelsInHorizontalMode;
+
+        // Anchor the add button to the corner the buttons expand away from
+        final float centerX = -mBoundsLeft >= mBoundsRight ? r - l - mBoundsRight : -mBoundsLeft;
+        final float centerY = -mBoundsTop >= mBoundsBottom ? b - t - mBoundsBottom : -mBoundsTop;
+
+        final int addButtonLeft = Math.round(centerX - mAddButton.getMeasuredWidth() / 2f);
+        final int addButtonTop = Math.round(centerY - mAddButton.getMeasuredHeight() / 2f);
+        mAddButton.layout(addButtonLeft, addButtonTop, addButtonLeft + mAddButton.getMeasuredWidth(), addButtonTop + mAddButton.getMeasuredHeight());
+
+        final int labelsRight = Math.round(centerX + mLabelsRight);
+
+        // A scrolled adapter stack is shifted towards the add button
+        float scrollX = 0f;
+        float scrollY = 0f;
+        final LinearMenuLayoutStrategy linearStrategy = getLinearStrategy();
+        if (linearStrategy != null) {
+            final int scrollOffset = -linearStrategy.getSign() * getAdapterScrollOffset();
+            if (linearStrategy.isHorizontal()) {
+                scrollX = scrollOffset;
+            } else {
+                scrollY = scrollOffset;
+            }
+        }
 
-                        label.setTranslationY(mExpanded ? expandedTranslation : collapsedTranslation);
-                        label.setAlpha(mExpanded ? 1f : 0f);
+        mAnimationBounds.setEmpty();
+        clearAnimatedViews();
+        ensureSlotCapacity(mPositionsCount);
+        int position = 0;
+        for (int i = mButtonsCount - 1; i >= 0 && position < mPositionsCount; i--) {
+            final View child = getChildAt(i);
 
-                        LayoutParams labelParams = (LayoutParams) label.getLayoutParams();
-                        labelParams.mCollapseDir.setFloatValues(expandedTranslation, collapsedTranslation);
-                        labelParams.mExpandDir.setFloatValues(collapsedTranslation, expandedTranslation);
-                        labelParams.setAnimationsTarget(label);
-                    }
+            if (child == mAddButton) continue;
+            if (child.getVisibility() == GONE) {
+                // Its translation and alpha aren't maintained while it's gone
+                ((LayoutParams) child.getLayoutParams()).invalidateLayout();
+                continue;
+            }
 
-                    nextY = expandUp ?
-                            childY - mButtonSpacing :
-                            childY + child.getMeasuredHeight() + mButtonSpacing;
+            final float expandedX = mExpandedPositions[2 * position] + scrollX;
+            final float expandedY = mExpandedPositions[2 * position + 1] + scrollY;
+            final float collapsedTranslationX = mCollapsedPositions[2 * position] - expandedX;
+            final float collapsedTranslationY = mCollapsedPositions[2 * position + 1] - expandedY;
+            final int slot = position++;
+
+            int childX = Math.round(centerX + expandedX - child.getMeasuredWidth() / 2f);
+            int childY = Math.round(centerY + expandedY - child.getMeasuredHeight() / 2f);
+
+            View label = showsLabels || helpLabels ? (View) child.getTag(R.id.fab_card_label) : null;
+            int labelLeft = 0;
+            int labelTop = 0;
+            if (label != null) {
+                if (showsLabels) {
+                    labelLeft = labelsRight - label.getMeasuredWidth();
+                    labelTop = childY - mLabelsVerticalOffset + (child.getMeasuredHeight() - label.getMeasuredHeight()) / 2;
+                } else {
+                    labelLeft = childX - (label.getMeasuredWidth() / 4);
+                    labelTop = addButtonTop - (label.getMeasuredWidth() / 4);
                 }
-                break;
+            }
 
-            case EXPAND_LEFT:
-            case EXPAND_RIGHT:
-                boolean expandLeft = mExpandDirection == EXPAND_LEFT;
+            final FlatLabel flatLabel = showsLabels ? (FlatLabel) child.getTag(R.id.fab_flat_label) : null;
+            if (updateLayoutCache(child, childX, childY, collapsedTranslationX, collapsedTranslationY, label, labelLeft, labelTop)) {
+                child.layout(childX, childY, childX + child.getMeasuredWidth(), childY + child.getMeasuredHeight());
+                resetAnimatedState(child, collapsedTranslationX, collapsedTranslationY);
 
-                int addButtonX = expandLeft ? r - l - mAddButton.getMeasuredWidth() : 0;
-                // Ensure mAddButton is centered on the line where the buttons should be
-                int addButtonTop = b - t - mMaxButtonHeight + (mMaxButtonHeight - mAddButton.getMeasuredHeight()) / 2;
-                if (mDisplayHelpLabelsInHorizontalMode) {
-                    addButtonTop += DISPLAY_HELP_LABELS_IN_HORIZONTAL_MODE_OFFSET;
+                if (flatLabel != null) {
+                    flatLabel.mLeft = labelsRight - flatLabel.mWidth;
+                    flatLabel.mTop = childY - mLabelsVerticalOffset + (child.getMeasuredHeight() - flatLabel.mHeight) / 2;
                 }
-                mAddButton.layout(addButtonX, addButtonTop, addButtonX + mAddButton.getMeasuredWidth(), addButtonTop + mAddButton.getMeasuredHeight());
-
-                int nextX = expandLeft ?
-                        addButtonX - mButtonSpacing :
-                        addButtonX + mAddButton.getMeasuredWidth() + mButtonSpacing;
-
-                for (int i = mButtonsCount - 1; i >= 0; i--) {
-                    final View child = getChildAt(i);
-
-                    if (child == mAddButton || child.getVisibility() == GONE) continue;
-
-                    int childX = expandLeft ? nextX - child.getMeasuredWidth() : nextX;
-                    int childY = addButtonTop + (mAddButton.getMeasuredHeight() - child.getMeasuredHeight()) / 2;
-                    child.layout(childX, childY, childX + child.getMeasuredWidth(), childY + child.getMeasuredHeight());
-
-                    float collapsedTranslation = addButtonX - childX;
-                    float expandedTranslation = 0f;
-
-                    child.setTranslationX(mExpanded ? expandedTranslation : collapsedTranslation);
-                    child.setAlpha(mExpanded ? 1f : 0f);
-
-                    LayoutParams params = (LayoutParams) child.getLayoutParams();
-                    params.mCollapseDir.setFloatValues(expandedTranslation, collapsedTranslation);
-                    params.mExpandDir.setFloatValues(collapsedTranslation, expandedTranslation);
-                    params.setAnimationsTarget(child);
-
-                    if (mDisplayHelpLabelsInHorizontalMode) {
-                        View label = (View) child.getTag(R.id.fab_card_label);
-                        if (label != null) {
-                            int labelLeft = childX - (label.getMeasuredWidth() / 4);
-                            int labelTop = addButtonTop - (label.getMeasuredWidth() / 4);
-                            label.layout(labelLeft, labelTop, labelLeft + label.getMeasuredWidth(), labelTop + label.getMeasuredHeight());
-                            label.setVisibility(View.GONE);
-                            LayoutParams labelParams = (LayoutParams) label.getLayoutParams();
-                            labelParams.mCollapseDir.setFloatValues(expandedTranslation, collapsedTranslation);
-                            labelParams.mExpandDir.setFloatValues(collapsedTranslation, expandedTranslation);
-                            labelParams.setAnimationsTarget(label);
-                        }
-                    }
 
-                    nextX = expandLeft ?
-                            childX - mButtonSpacing :
-                            childX + child.getMeasuredWidth() + mButtonSpacing;
+                if (label != null) {
+                    label.layout(labelLeft, labelTop, labelLeft + label.getMeasuredWidth(), labelTop + label.getMeasuredHeight());
+                    if (showsLabels) {
+                        resetAnimatedState(label, collapsedTranslationX, collapsedTranslationY);
+                    } else if (!mLabelTooltips.isShowing(label)) {
+                        label.setVisibility(View.GONE);
+                    }
                 }
+            }
 
-                break;
+            addAnimatedView(child, slot, collapsedTranslationX, collapsedTranslationY);
+            // Help labels are shown as tooltips, whose alpha the menu timeline must not touch
+            if (label != null && showsLabels) {
+                addAnimatedView(label, slot, collapsedTranslationX, collapsedTranslationY);
+            }
+
+            unionAnimationBounds(childX, childY, childX + child.getMeasuredWidth(), childY + child.getMeasuredHeight(),
+                    collapsedTranslationX, collapsedTranslationY);
+            if (flatLabel != null) {
+                final int shadowBottom = flatLabel.mTop + flatLabel.mHeight + (int) Math.ceil(mFlatLabelShadowOffset) + mFlatLabelShadowInset;
+                unionAnimationBounds(flatLabel.mLeft - mFlatLabelShadowInset, flatLabel.mTop - mFlatLabelShadowInset,
+                        flatLabel.mLeft + flatLabel.mWidth + mFlatLabelShadowInset, shadowBottom, collapsedTranslationX, collapsedTranslationY);
+            }
+        }
+
+        if (mFlattenLabels) {
+            // The labels follow the translation and alpha the buttons were just given
+            invalidate();
+        }
+    }
+
+    /**
+     * Adds the area a view sweeps while it animates, from its collapsed translation to its overshoot
+     * past the expanded position, to the bounds redrawn on every animation frame.
+     */
+    private void unionAnimationBounds(int left, int top, int right, int bottom,
+                                      float collapsedTranslationX, float collapsedTranslationY) {
+        final float overshootX = -collapsedTranslationX * mOvershoot;
+        final float overshootY = -collapsedTranslationY * mOvershoot;
+        mAnimationBounds.union(
+                left + (int) Math.floor(Math.min(0f, Math.min(collapsedTranslationX, overshootX))),
+                top + (int) Math.floor(Math.min(0f, Math.min(collapsedTranslationY, overshootY))),
+                right + (int) Math.ceil(Math.max(0f, Math.max(collapsedTranslationX, overshootX))),
+                bottom + (int) Math.ceil(Math.max(0f, Math.max(collapsedTranslationY, overshootY))));
+    }
+
+    /**
+     * Puts a button or label in its collapsed or expanded state, unless the running animation is
+     * going to write its state on the next frame anyway.
+     */
+    private void resetAnimatedState(View view, float collapsedTranslationX, float collapsedTranslationY) {
+        if (mAnimator.isRunning()) {
+            return;
+        }
+
+        final float progress = getExpansionProgress();
+        view.setTranslationX(collapsedTranslationX * (1f - progress));
+        view.setTranslationY(collapsedTranslationY * (1f - progress));
+        view.setAlpha(progress);
+    }
+
+    private void clearAnimatedViews() {
+        // Drop the references so removed views can be collected
+        for (int i = 0; i < mAnimatedCount; i++) {
+            mAnimatedViews[i] = null;
+        }
+        mAnimatedCount = 0;
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        super.dispatchDraw(canvas);
+
+        if (mFlattenLabels) {
+            drawFlatLabels(canvas);
         }
     }
 
@@ -338,14 +667,103 @@ public class FloatingActionsMenu extends ViewGroup implements View.OnLongClickLi
         return super.checkLayoutParams(p);
     }
 
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent ev) {
+        if (!canScrollActions()) {
+            return false;
+        }
+
+        trackVelocity(ev);
+        final float position = getTouchPosition(ev);
+        switch (ev.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mLastTouchPosition = position;
+                // Touching the stack while it flings catches it
+                mScrolling = mScroller != null && !mScroller.isFinished();
+                if (mScroller != null) {
+                    mScroller.forceFinished(true);
+                }
+                break;
+            case MotionEvent.ACTION_MOVE:
+                if (!mScrolling && Math.abs(position - mLastTouchPosition) > mTouchSlop) {
+                    mScrolling = true;
+                    mLastTouchPosition = position;
+                    if (getParent() != null) {
+                        getParent().requestDisallowInterceptTouchEvent(true);
+                    }
+                }
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                mScrolling = false;
+                recycleVelocityTracker();
+                break;
+        }
+        return mScrolling;
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent ev) {
+        final boolean labelTouched = mFlattenLabels && onFlatLabelTouchEvent(ev);
+        if (!canScrollActions()) {
+            return labelTouched || super.onTouchEvent(ev);
+        }
+
+        trackVelocity(ev);
+        final float position = getTouchPosition(ev);
+        switch (ev.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mLastTouchPosition = position;
+                if (mScroller != null) {
+                    mScroller.forceFinished(true);
+                }
+                break;
+            case MotionEvent.ACTION_MOVE:
+                if (!mScrolling && Math.abs(position - mLastTouchPosition) > mTouchSlop) {
+                    mScrolling = true;
+                    mLastTouchPosition = position;
+                    mPressedLabelButton = null;
+                }
+                if (mScrolling) {
+                    int delta = (int) (position - mLastTouchPosition);
+                    mLastTouchPosition += delta;
+                    setAdapterScroll(mAdapterScroll + delta * getScrollSign());
+                }
+                break;
+            case MotionEvent.ACTION_UP:
+                if (mScrolling) {
+                    mVelocityTracker.computeCurrentVelocity(1000, mMaximumFlingVelocity);
+                    float velocity = expandsHorizontally() ? mVelocityTracker.getXVelocity() : mVelocityTracker.getYVelocity();
+                    if (Math.abs(velocity) > mMinimumFlingVelocity) {
+                        flingActions((int) velocity * getScrollSign());
+                    }
+                }
+                // fall through
+            case MotionEvent.ACTION_CANCEL:
+                mScrolling = false;
+                recycleVelocityTracker();
+                break;
+        }
+        return true;
+    }
+
+    @Override
+    public void computeScroll() {
+        if (mScroller != null && mScroller.computeScrollOffset()) {
+            setAdapterScroll(mScroller.getCurrY());
+            ViewCompat.postInvalidateOnAnimation(this);
+        }
+    }
+
     @Override
     protected void onFinishInflate() {
         super.onFinishInflate();
 
         bringChildToFront(mAddButton);
         mButtonsCount = getChildCount();
+        invalidateMeasureCache();
 
-        if (mLabelsStyle != 0 || mLabelsTextColor != 0) {
+        if (hasLabels()) {
             createLabels();
         }
     }
@@ -366,10 +784,13 @@ public class FloatingActionsMenu extends ViewGroup implements View.OnLongClickLi
             SavedState savedState = (SavedState) state;
             mExpanded = savedState.mExpanded;
             mIsSlidOut = savedState.mIsSlidOut;
+            mSeeking = false;
 
-            if (mRotatingDrawable != null) {
-                mRotatingDrawable.setRotation(mExpanded ? EXPANDED_PLUS_ROTATION : COLLAPSED_PLUS_ROTATION);
+            if (mPlusIcon != null) {
+                mPlusIcon.setProgress(mExpanded ? 1f : 0f);
             }
+            // The children's translation and alpha depend on the restored state
+            invalidateLayoutCache();
 
             if (mIsSlidOut) {
                 setVisibility(View.GONE);
@@ -389,28 +810,201 @@ public class FloatingActionsMenu extends ViewGroup implements View.OnLongClickLi
         mListener = listener;
     }
 
+    /**
+     * @return an editor that restyles the menu's add button with a single background rebuild.
+     */
+    public AddFloatingActionButton.Editor editAddButton() {
+        return mAddButton.edit();
+    }
+
     public void addButton(FloatingActionButton button) {
+        checkNoAdapter();
         addView(button, mButtonsCount - 1);
         mButtonsCount++;
-
-        if (mLabelsStyle != 0 || mLabelsTextColor != 0) {
-            createLabels();
-        }
+        invalidateMeasureCache();
+        setUpButton(button);
     }
 
     public void removeButton(FloatingActionButton button) {
+        checkNoAdapter();
         removeView(button.getCardView());
         removeView(button);
         mButtonsCount--;
+        invalidateMeasureCache();
+    }
+
+    /**
+     * Replaces the action buttons with the given ones, ordered like successive
+     * {@link #addButton(FloatingActionButton)} calls would order them. Buttons that are already in the
+     * menu keep their views and labels and are only moved, the others are added or removed, all
+     * within a single layout pass.
+     */
+    public void setActions(@NonNull List<FloatingActionButton> actions) {
+        checkNoAdapter();
+
+        final Set<FloatingActionButton> newButtons = new HashSet<FloatingActionButton>(actions.size());
+        for (int i = 0; i < actions.size(); i++) {
+            FloatingActionButton button = actions.get(i);
+            if (button == null || button == mAddButton || !newButtons.add(button)) {
+                throw new IllegalArgumentException("Actions must be distinct buttons other than the add button");
+            }
+        }
+
+        final Set<FloatingActionButton> oldButtons = new HashSet<FloatingActionButton>(mButtonsCount);
+        for (int i = mButtonsCount - 2; i >= 0; i--) {
+            FloatingActionButton button = (FloatingActionButton) getChildAt(i);
+            if (newButtons.contains(button)) {
+                oldButtons.add(button);
+                continue;
+            }
+
+            View label = button.getCardView();
+            if (label != null) {
+                removeViewInLayout(label);
+            }
+            removeViewInLayout(button);
+            mButtonsCount--;
+        }
+
+        // The kept buttons are in their old relative order, insert and move the others around them
+        for (int i = 0; i < actions.size(); i++) {
+            FloatingActionButton button = actions.get(i);
+            if (getChildAt(i) == button) {
+                continue;
+            }
+
+            if (oldButtons.contains(button)) {
+                detachViewFromParent(button);
+                attachViewToParent(button, i, button.getLayoutParams());
+            } else {
+                ViewGroup.LayoutParams params = button.getLayoutParams();
+                if (!(params instanceof LayoutParams)) {
+                    params = params == null ? generateDefaultLayoutParams() : generateLayoutParams(params);
+                }
+                addViewInLayout(button, i, params, true);
+                mButtonsCount++;
+                setUpButton(button);
+            }
+        }
+
+        invalidateMeasureCache();
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * Switches the menu to the adapter mode. The buttons added so far are removed and the menu only
+     * keeps as many buttons as fit on screen, binding them to the adapter positions that are scrolled
+     * into the expanded stack. Pass null to leave the menu with only its add button.
+     */
+    public void setAdapter(Adapter adapter) {
+        if (mAdapter != null) {
+            mAdapter.mMenu = null;
+        }
+        mAdapter = adapter;
+        if (adapter != null) {
+            adapter.mMenu = this;
+        }
+
+        for (int i = getChildCount() - 1; i >= 0; i--) {
+            if (getChildAt(i) != mAddButton) {
+                removeViewAt(i);
+            }
+        }
+        mButtonsCount = 1;
+        mRecycledButtons.clear();
+        mAdapterScroll = 0;
+        if (mScroller != null) {
+            mScroller.forceFinished(true);
+        }
+
+        invalidateMeasureCache();
+        requestLayout();
+    }
+
+    public Adapter getAdapter() {
+        return mAdapter;
+    }
+
+    /**
+     * Replaces the layout of the action buttons, which is a {@link LinearMenuLayoutStrategy} for the
+     * fab_expandDirection by default. Labels are only shown by strategies that support them, and only
+     * linear strategies scroll in adapter mode.
+     */
+    public void setLayoutStrategy(@NonNull MenuLayoutStrategy strategy) {
+        if (strategy == null) {
+            throw new IllegalArgumentException("The layout strategy can't be null");
+        }
+
+        final boolean showedLabels = mLayoutStrategy.showsLabels();
+        mLayoutStrategy = strategy;
+        if (showedLabels != strategy.showsLabels()) {
+            updateLabelsForStrategy();
+        }
+        // Nothing can scroll until the next measure works out the range for the new strategy
+        mAdapterScroll = 0;
+        mAdapterMaxScroll = 0;
+        if (mScroller != null) {
+            mScroller.forceFinished(true);
+        }
+        invalidateMeasureCache();
+        invalidateLayoutCache();
+        requestLayout();
+    }
+
+    /**
+     * Shows the card labels of a strategy that lays them out, and hides them and drops the flat label
+     * layouts otherwise, so no label is left behind with its last frame.
+     */
+    private void updateLabelsForStrategy() {
+        final boolean showsLabels = mLayoutStrategy.showsLabels();
+        if (showsLabels) {
+            mLabelTooltips.cancel();
+        }
+
+        for (int i = 0; i < mButtonsCount; i++) {
+            final View child = getChildAt(i);
+            if (child == mAddButton) {
+                continue;
+            }
+
+            final View cardView = (View) child.getTag(R.id.fab_card_label);
+            if (cardView != null) {
+                cardView.setVisibility(showsLabels ? View.VISIBLE : View.GONE);
+            }
+
+            final FlatLabel flatLabel = (FlatLabel) child.getTag(R.id.fab_flat_label);
+            if (flatLabel != null && !showsLabels) {
+                // Measured again from the title if the labels come back
+                flatLabel.mText = null;
+                flatLabel.mLayout = null;
+            }
+        }
+        mPressedLabelButton = null;
+        invalidate();
+    }
+
+    public MenuLayoutStrategy getLayoutStrategy() {
+        return mLayoutStrategy;
     }
 
     public void collapse() {
-        if (mExpanded) {
+        collapse(0f);
+    }
+
+    /**
+     * Collapses the menu, starting a spring driven motion with the given velocity.
+     *
+     * @param velocity towards the collapsed state, in expansion progress per second. For example the
+     *                 speed of a fling divided by the distance of the farthest button.
+     */
+    public void collapse(float velocity) {
+        if (mExpanded || mSeeking) {
+            final boolean wasExpanded = mExpanded;
             mExpanded = false;
-            mCollapseAnimation.start();
-            mExpandAnimation.cancel();
+            startAnimation(false, -velocity);
 
-            if (mListener != null) {
+            if (wasExpanded && mListener != null) {
                 mListener.onMenuCollapsed();
             }
         }
@@ -425,72 +1019,229 @@ public class FloatingActionsMenu extends ViewGroup implements View.OnLongClickLi
     }
 
     public void expand() {
-        if (!mExpanded) {
+        expand(0f);
+    }
+
+    /**
+     * Expands the menu, starting a spring driven motion with the given velocity.
+     *
+     * @param velocity towards the expanded state, in expansion progress per second. For example the
+     *                 speed of a fling divided by the distance of the farthest button.
+     */
+    public void expand(float velocity) {
+        if (!mExpanded || mSeeking) {
+            final boolean wasExpanded = mExpanded;
             mExpanded = true;
-            mCollapseAnimation.cancel();
-            mExpandAnimation.start();
+            startAnimation(true, velocity);
 
-            if (mListener != null) {
+            if (!wasExpanded && mListener != null) {
                 mListener.onMenuExpanded();
             }
         }
     }
 
+    /**
+     * Positions the buttons, labels and the plus icon for the given fraction between collapsed (0)
+     * and expanded (1), for example to follow a drag or a nested scroll. A running animation is
+     * stopped. Doesn't allocate, so it can be called for every touch event. The menu stays in this
+     * state until {@link #settleExpansion()}, {@link #expand()} or {@link #collapse()} is called.
+     */
+    public void setExpansionProgress(float progress) {
+        if (mAnimator.isRunning()) {
+            mAnimator.cancel();
+        }
+
+        mSeeking = true;
+        mExpansionProgress = clampFraction(progress);
+        final float remaining = 1f - mExpansionProgress;
+        for (int i = 0; i < mAnimatedCount; i++) {
+            final View view = mAnimatedViews[i];
+            view.setTranslationX(mAnimatedTranslations[2 * i] * remaining);
+            view.setTranslationY(mAnimatedTranslations[2 * i + 1] * remaining);
+            view.setAlpha(mExpansionProgress);
+        }
+        if (mPlusIcon != null) {
+            mPlusIcon.setProgress(mExpansionProgress);
+        }
+
+        if (mFlattenLabels) {
+            invalidate(mAnimationBounds);
+        }
+    }
+
+    /**
+     * @return the fraction set with {@link #setExpansionProgress(float)} while it is being followed,
+     * otherwise 1 if the menu is expanded and 0 if it is collapsed.
+     */
+    public float getExpansionProgress() {
+        if (mSeeking) {
+            return mExpansionProgress;
+        }
+        return mExpanded ? 1f : 0f;
+    }
+
+    /**
+     * @return the timeline that drives the expand and collapse animations. Stepping it with
+     * {@link ValueAnimator#setCurrentPlayTime(long)} renders single frames, e.g. to time them.
+     */
+    ValueAnimator getAnimator() {
+        return mAnimator;
+    }
+
+    /**
+     * Animates from the progress set with {@link #setExpansionProgress(float)} to the nearest of the
+     * expanded and collapsed states.
+     */
+    public void settleExpansion() {
+        settleExpansion(0f);
+    }
+
+    /**
+     * Like {@link #settleExpansion()}, carrying the given velocity in expansion progress per second
+     * into a spring driven motion.
+     */
+    public void settleExpansion(float velocity) {
+        if (!mSeeking) {
+            return;
+        }
+
+        if (mExpansionProgress >= 0.5f) {
+            expand(velocity);
+        } else {
+            collapse(-velocity);
+        }
+    }
+
     public boolean isExpanded() {
         return mExpanded;
     }
 
-    public void slideInMenu() {
-        if (!mIsSlidOut) {
-            return;
+    /**
+     * Moves the buttons and the plus icon with a spring instead of the expand and collapse
+     * interpolators, which also lets {@link #expand(float)} and {@link #collapse(float)} carry a
+     * velocity into the motion.
+     *
+     * @param stiffness    the spring constant in 1/s^2, or 0 to go back to the interpolators.
+     * @param dampingRatio 1 for no bounce, lower values bounce more.
+     */
+    public void setSpring(float stiffness, float dampingRatio) {
+        if (stiffness > 0f) {
+            mSpring.setParameters(stiffness, dampingRatio);
+            mUseSpring = true;
+        } else {
+            mUseSpring = false;
         }
-        Animation slide_in = AnimationUtils.loadAnimation(getContext(), R.anim.fab_slide_in);
-        slide_in.setAnimationListener(new Animation.AnimationListener() {
-            @Override
-            public void onAnimationStart(Animation animation) {
-                setVisibility(View.VISIBLE);
-            }
 
-            @Override
-            public void onAnimationEnd(Animation animation) {
-                mIsSlidOut = false;
-            }
+        // The overshoot decides the measured size
+        updateOvershoot();
+        invalidateMeasureCache();
+        requestLayout();
+    }
 
-            @Override
-            public void onAnimationRepeat(Animation animation) {
+    /**
+     * @return the number of buttons whose layout, translations and animator values were reused
+     * because nothing affecting them changed since the previous layout pass.
+     */
+    public int getLayoutSkippedCount() {
+        return mLayoutSkippedCount;
+    }
 
-            }
-        });
-        setAnimation(slide_in);
+    /**
+     * @return the number of buttons that were laid out and had their animations set up again.
+     */
+    public int getLayoutRecomputedCount() {
+        return mLayoutRecomputedCount;
     }
 
+    /**
+     * @return true if the menu is slid out or sliding out.
+     */
+    public boolean isSlidOut() {
+        return mSlideAnimator.isRunning() ? mSlidingOut : mIsSlidOut;
+    }
+
+    /**
+     * Slides the menu back in from wherever it currently is. Does nothing if it is already slid in
+     * or sliding in, so it can be called for every scroll event.
+     */
+    public void slideInMenu() {
+        if (!isSlidOut()) {
+            return;
+        }
+
+        // A menu that was hidden without sliding, e.g. when restored, comes in from the slid out position
+        final float from = getVisibility() == View.VISIBLE ? getTranslationY() : getSlideDistance();
+        startSlide(false, from, 0f);
+    }
+
+    /**
+     * Collapses the menu and slides it out below its parent's center. Does nothing if it is already
+     * slid out or sliding out, so it can be called for every scroll event.
+     */
     public void slideOutMenu() {
-        if (mIsSlidOut) {
+        if (isSlidOut()) {
             return;
         }
         if (mExpanded) {
             collapse();
         }
 
-        Animation slide_out = AnimationUtils.loadAnimation(getContext(), R.anim.fab_slide_out);
-        slide_out.setAnimationListener(new Animation.AnimationListener() {
-            @Override
-            public void onAnimationStart(Animation animation) {
+        startSlide(true, getTranslationY(), getSlideDistance());
+    }
 
+    private void createSlideAnimator() {
+        mSlideAnimator = ObjectAnimator.ofFloat(this, View.TRANSLATION_Y, 0f);
+        mSlideAnimator.setDuration(SLIDE_DURATION);
+        mSlideAnimator.addListener(new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationStart(Animator animation) {
+                mSlideCanceled = false;
+                if (!mSlidingOut) {
+                    setVisibility(View.VISIBLE);
+                }
             }
 
             @Override
-            public void onAnimationEnd(Animation animation) {
-                mIsSlidOut = true;
-                setVisibility(View.GONE);
+            public void onAnimationCancel(Animator animation) {
+                mSlideCanceled = true;
             }
 
             @Override
-            public void onAnimationRepeat(Animation animation) {
+            public void onAnimationEnd(Animator animation) {
+                if (mSlideCanceled) {
+                    return;
+                }
 
+                mIsSlidOut = mSlidingOut;
+                if (mSlidingOut) {
+                    setVisibility(View.GONE);
+                }
             }
         });
-        setAnimation(slide_out);
+    }
+
+    private void startSlide(boolean out, float from, float to) {
+        if (mSlideAnimator.isRunning()) {
+            mSlideAnimator.cancel();
+        }
+
+        // A reversal covers only the distance left, at the same speed
+        final float distance = getSlideDistance();
+        final float fraction = distance > 0f ? Math.min(Math.abs(to - from) / distance, 1f) : 1f;
+
+        mSlidingOut = out;
+        mSlideAnimator.setInterpolator(out ? mSlideOutInterpolator : mSlideInInterpolator);
+        mSlideAnimator.setFloatValues(from, to);
+        mSlideAnimator.setDuration((long) (SLIDE_DURATION * fraction));
+        mSlideAnimator.start();
+    }
+
+    private float getSlideDistance() {
+        final ViewParent parent = getParent();
+        if (parent instanceof View) {
+            return ((View) parent).getHeight() * SLIDE_DISTANCE_FRACTION;
+        }
+        return getHeight();
     }
 
     @Override
@@ -502,56 +1253,282 @@ public class FloatingActionsMenu extends ViewGroup implements View.OnLongClickLi
         return false;
     }
 
+    private void updateMetrics() {
+        mMetrics = FabMetrics.get(getResources());
+        mButtonSpacing = (int) (mMetrics.actionsSpacing - mMetrics.shadowRadius - mMetrics.shadowOffset);
+        mLabelsMargin = mMetrics.labelsMargin;
+        mLabelsVerticalOffset = mMetrics.labelsVerticalOffset;
+        invalidateMeasureCache();
+    }
+
     private int getColor(@ColorRes int id) {
         return getResources().getColor(id);
     }
 
-    private int adjustForOvershoot(int dimension) {
-        return dimension * 12 / 10;
+    private void updateOvershoot() {
+        mOvershoot = mUseSpring ? mSpring.getOvershoot() : computeOvershoot(mExpandInterpolator);
+    }
+
+    /**
+     * @return how far the interpolator goes past its end value, as a fraction of the animated
+     * distance. It's sampled so any interpolator, not just an {@link OvershootInterpolator}, works.
+     */
+    private static float computeOvershoot(Interpolator interpolator) {
+        float peak = 1f;
+        for (int i = 1; i <= OVERSHOOT_SAMPLES; i++) {
+            peak = Math.max(peak, interpolator.getInterpolation(i / (float) OVERSHOOT_SAMPLES));
+        }
+        return peak - 1f;
     }
 
     private boolean expandsHorizontally() {
-        return mExpandDirection == EXPAND_LEFT || mExpandDirection == EXPAND_RIGHT;
+        final LinearMenuLayoutStrategy linearStrategy = getLinearStrategy();
+        return linearStrategy != null && linearStrategy.isHorizontal();
     }
 
-    private void createAddButton(Context context) {
-        mAddButton = new AddFloatingActionButton(context) {
-            @Override
-            void updateBackground() {
-                mPlusColor = mAddButtonPlusColor;
-                mColorNormal = mAddButtonColorNormal;
-                mColorPressed = mAddButtonColorPressed;
-                mStrokeVisible = mAddButtonStrokeVisible;
-                super.updateBackground();
+    private LinearMenuLayoutStrategy getLinearStrategy() {
+        return mLayoutStrategy instanceof LinearMenuLayoutStrategy ? (LinearMenuLayoutStrategy) mLayoutStrategy : null;
+    }
+
+    /**
+     * Records the layout of a button and its label.
+     *
+     * @return true if either of them has to be laid out again, false if nothing changed since the
+     * last layout pass and the button can be skipped.
+     */
+    private boolean updateLayoutCache(View child, int childLeft, int childTop, float collapsedTranslationX,
+                                      float collapsedTranslationY, View label, int labelLeft, int labelTop) {
+        boolean changed = ((LayoutParams) child.getLayoutParams())
+                .updateLayout(child, childLeft, childTop, collapsedTranslationX, collapsedTranslationY);
+        if (label != null) {
+            changed |= ((LayoutParams) label.getLayoutParams())
+                    .updateLayout(label, labelLeft, labelTop, collapsedTranslationX, collapsedTranslationY);
+        }
+
+        if (changed) {
+            mLayoutRecomputedCount++;
+        } else {
+            mLayoutSkippedCount++;
+        }
+        return changed;
+    }
+
+    private void invalidateLayoutCache() {
+        mLayoutGeneration++;
+    }
+
+    private void checkNoAdapter() {
+        if (mAdapter != null) {
+            throw new IllegalStateException("The buttons of this menu are provided by its adapter");
+        }
+    }
+
+    /**
+     * Decides how many adapter buttons fit in the available space, clamps the scroll position and
+     * binds the pooled buttons to the positions of the scrolled window.
+     */
+    private void updateAdapterWindow(int widthMeasureSpec, int heightMeasureSpec) {
+        final boolean horizontal = expandsHorizontally();
+        final int count = mAdapter.getCount();
+
+        if (count == 0 || getLinearStrategy() == null) {
+            // Only linear stacks scroll, other layouts show all of the adapter's buttons
+            setAdapterPoolSize(count, 0);
+            mAdapterPitch = 0;
+            mAdapterMaxScroll = 0;
+            mAdapterScroll = 0;
+            mAdapterLength = -1;
+            return;
+        }
+
+        measureChild(mAddButton, widthMeasureSpec, heightMeasureSpec);
+        final int addButtonSize = horizontal ? mAddButton.getMeasuredWidth() : mAddButton.getMeasuredHeight();
+
+        // The buttons of an adapter are expected to share their size, so a single one sizes the slots
+        if (mButtonsCount == 1) {
+            setAdapterPoolSize(1, mAdapterPitch > 0 ? Math.min(mAdapterScroll / mAdapterPitch, count - 1) : 0);
+        }
+        View sample = getChildAt(0);
+        measureChild(sample, widthMeasureSpec, heightMeasureSpec);
+        mAdapterPitch = (horizontal ? sample.getMeasuredWidth() : sample.getMeasuredHeight()) + mButtonSpacing;
+
+        final int axisMeasureSpec = horizontal ? widthMeasureSpec : heightMeasureSpec;
+        final int available = MeasureSpec.getMode(axisMeasureSpec) == MeasureSpec.UNSPECIFIED
+                ? (horizontal ? getResources().getDisplayMetrics().widthPixels : getResources().getDisplayMetrics().heightPixels)
+                : MeasureSpec.getSize(axisMeasureSpec);
+        // The farthest button travels less than the stack's length, so it can't overshoot by more
+        final int slots = Math.max(1, Math.min(count, ((int) (available / (1f + mOvershoot)) - addButtonSize) / mAdapterPitch));
+
+        mAdapterMaxScroll = (count - slots) * mAdapterPitch;
+        mAdapterScroll = Math.max(0, Math.min(mAdapterScroll, mAdapterMaxScroll));
+        mAdapterLength = (int) Math.ceil((addButtonSize + slots * mAdapterPitch) * (1f + mOvershoot));
+
+        // A partially scrolled stack shows one more button at its far end
+        setAdapterPoolSize(getAdapterScrollOffset() != 0 ? slots + 1 : slots, mAdapterScroll / mAdapterPitch);
+    }
+
+    /**
+     * Grows or shrinks the pool of adapter buttons at the far end of the stack, recycling removed
+     * buttons and their labels, and binds button i of the pool to position first + size - 1 - i.
+     */
+    private void setAdapterPoolSize(int size, int first) {
+        while (mButtonsCount - 1 > size) {
+            FloatingActionButton button = (FloatingActionButton) getChildAt(0);
+            View label = button.getCardView();
+            if (label != null) {
+                removeViewInLayout(label);
             }
+            removeViewInLayout(button);
+            mButtonsCount--;
 
-            @Override
-            Drawable getIconDrawable() {
-                final RotatingDrawable rotatingDrawable = new RotatingDrawable(super.getIconDrawable());
-                mRotatingDrawable = rotatingDrawable;
+            ((LayoutParams) button.getLayoutParams()).mAdapterPosition = -1;
+            mRecycledButtons.add(button);
+        }
 
-                Interpolator interpolator;
-                if (mBounceWhenExpanding) {
-                    interpolator = new OvershootInterpolator();
-                } else {
-                    interpolator = new DecelerateInterpolator(3f);
+        while (mButtonsCount - 1 < size) {
+            FloatingActionButton button;
+            if (mRecycledButtons.isEmpty()) {
+                button = mAdapter.createButton(getContext());
+                button.setCloseMenuOnClick(mCloseOnItemClick);
+                button.setFloatingActionsMenu(this);
+                addViewInLayout(button, 0, generateDefaultLayoutParams(), true);
+            } else {
+                button = mRecycledButtons.remove(mRecycledButtons.size() - 1);
+                addViewInLayout(button, 0, button.getLayoutParams(), true);
+                View label = button.getCardView();
+                if (label != null) {
+                    addViewInLayout(label, -1, label.getLayoutParams(), true);
                 }
+            }
+            ((LayoutParams) button.getLayoutParams()).invalidateLayout();
+            mButtonsCount++;
+        }
+
+        for (int i = 0; i < size; i++) {
+            FloatingActionButton button = (FloatingActionButton) getChildAt(i);
+            LayoutParams params = (LayoutParams) button.getLayoutParams();
+            int position = first + size - 1 - i;
+            if (params.mAdapterPosition != position) {
+                params.mAdapterPosition = position;
+                mAdapter.bindButton(button, position);
+
+                setUpButton(button);
+            }
+        }
+    }
+
+    void onAdapterDataSetChanged() {
+        for (int i = 0; i < mButtonsCount - 1; i++) {
+            ((LayoutParams) getChildAt(i).getLayoutParams()).mAdapterPosition = -1;
+        }
+        invalidateMeasureCache();
+        requestLayout();
+    }
+
+    /**
+     * @return how far the adapter buttons are shifted towards the add button, within one slot.
+     */
+    private int getAdapterScrollOffset() {
+        return mAdapter != null && mAdapterPitch > 0 ? mAdapterScroll % mAdapterPitch : 0;
+    }
+
+    private void setAdapterScroll(int scroll) {
+        scroll = Math.max(0, Math.min(scroll, mAdapterMaxScroll));
+        if (scroll == mAdapterScroll) {
+            return;
+        }
+
+        // Only a change of the bound positions or of the pool size needs a new measure pass
+        if (scroll / mAdapterPitch != mAdapterScroll / mAdapterPitch
+                || (scroll % mAdapterPitch == 0) != (mAdapterScroll % mAdapterPitch == 0)) {
+            invalidateMeasureCache();
+        }
+        mAdapterScroll = scroll;
+        requestLayout();
+    }
+
+    private void flingActions(int velocity) {
+        if (mScroller == null) {
+            mScroller = new OverScroller(getContext());
+        }
+        mScroller.fling(0, mAdapterScroll, 0, velocity, 0, 0, 0, mAdapterMaxScroll);
+        ViewCompat.postInvalidateOnAnimation(this);
+    }
+
+    private boolean canScrollActions() {
+        return mAdapter != null && mExpanded && mAdapterMaxScroll > 0;
+    }
+
+    private float getTouchPosition(MotionEvent ev) {
+        return expandsHorizontally() ? ev.getX() : ev.getY();
+    }
 
-                final ObjectAnimator collapseAnimator = ObjectAnimator.ofFloat(rotatingDrawable, "rotation", EXPANDED_PLUS_ROTATION, COLLAPSED_PLUS_ROTATION);
-                final ObjectAnimator expandAnimator = ObjectAnimator.ofFloat(rotatingDrawable, "rotation", COLLAPSED_PLUS_ROTATION, EXPANDED_PLUS_ROTATION);
+    /**
+     * @return 1 if moving towards the add button is a positive move along the expand axis, -1
+     * otherwise. Moving the stack towards the add button reveals the later adapter positions.
+     */
+    private int getScrollSign() {
+        return -getLinearStrategy().getSign();
+    }
 
-                collapseAnimator.setInterpolator(interpolator);
-                expandAnimator.setInterpolator(interpolator);
+    private void trackVelocity(MotionEvent ev) {
+        if (mVelocityTracker == null) {
+            mVelocityTracker = VelocityTracker.obtain();
+        }
+        mVelocityTracker.addMovement(ev);
+    }
 
-                mExpandAnimation.play(expandAnimator);
-                mCollapseAnimation.play(collapseAnimator);
+    private void recycleVelocityTracker() {
+        if (mVelocityTracker != null) {
+            mVelocityTracker.recycle();
+            mVelocityTracker = null;
+        }
+    }
 
-                return rotatingDrawable;
+    private void createAddButton(Context context) {
+        mAddButton = new AddFloatingActionButton(context) {
+            @Override
+            FabBackgroundCache.Key getBackgroundCacheKey() {
+                // The plus icon holds per button progress, so the background can't be shared
+                return null;
             }
         };
 
+        // The plus icon is reused across background rebuilds, so the timeline can keep driving it
+        mPlusIcon = mAddButton.getPlusIconDrawable();
+
+        if (mBounceWhenExpanding) {
+            mIconInterpolator = new OvershootInterpolator();
+        } else {
+            mIconInterpolator = new DecelerateInterpolator(3f);
+        }
+
+        // A single linear timeline drives the icon and every child, see onAnimationFrame()
+        mAnimator.setInterpolator(new LinearInterpolator());
+        mAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+            @Override
+            public void onAnimationUpdate(ValueAnimator animation) {
+                onAnimationFrame(animation.getAnimatedFraction() * animation.getDuration());
+            }
+        });
+        mAnimator.addListener(new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                // Also called on cancel, but a reversal keeps animating the same views
+                if (!mRestartingAnimation) {
+                    restoreLayerTypes();
+                }
+            }
+        });
+
         mAddButton.setId(R.id.fab_expand_menu_button);
-        mAddButton.setSize(mAddButtonSize);
+        mAddButton.edit()
+                .setPlusColor(mAddButtonPlusColor)
+                .setColorNormal(mAddButtonColorNormal)
+                .setColorPressed(mAddButtonColorPressed)
+                .setStrokeVisible(mAddButtonStrokeVisible)
+                .setSize(mAddButtonSize)
+                .apply();
         mAddButton.setOnClickListener(new OnClickListener() {
             @Override
             public void onClick(View v) {
@@ -563,127 +1540,664 @@ public class FloatingActionsMenu extends ViewGroup implements View.OnLongClickLi
     }
 
     private void createLabels() {
-        Context labelContext = null;
-        if (mLabelsStyle != 0) {
-            labelContext = new ContextThemeWrapper(getContext(), mLabelsStyle);
+        for (int i = 0; i < mButtonsCount; i++) {
+            View child = getChildAt(i);
+            if (child != mAddButton) {
+                setUpButton((FloatingActionButton) child);
+            }
         }
+    }
 
-        for (int i = 0; i < mButtonsCount; i++) {
-            FloatingActionButton button = (FloatingActionButton) getChildAt(i);
-            String title = button.getTitle();
+    /**
+     * Hooks a single button up to the menu and creates its label, so adding a button doesn't have to
+     * walk all the others.
+     */
+    private void setUpButton(FloatingActionButton button) {
+        if (!hasLabels() || hasLabel(button))
+            return;
 
-            if (button == mAddButton || button.getTag(R.id.fab_card_label) != null)
-                continue;
+        button.setCloseMenuOnClick(mCloseOnItemClick);
+        button.setFloatingActionsMenu(this);
+        if (button.getTitle() == null)
+            return;
 
-            button.setCloseMenuOnClick(mCloseOnItemClick);
-            button.setFloatingActionsMenu(this);
-            if (title == null)
-                continue;
+        if (useFlatLabels()) {
+            button.setTag(R.id.fab_flat_label, new FlatLabel());
+        } else {
+            // Adding the button already requested a layout
+            addViewInLayout(createLabel(button), -1, generateDefaultLayoutParams(), true);
+        }
+        invalidateMeasureCache();
+    }
+
+    /**
+     * Delays the animation of each button, and its label, by the given time per position. Expanding
+     * starts with the button closest to the add button and collapsing with the farthest one.
+     */
+    public void setStaggerDelay(int delayMillis) {
+        mStaggerDelay = Math.max(0, delayMillis);
+    }
+
+    public int getStaggerDelay() {
+        return mStaggerDelay;
+    }
+
+    /**
+     * Starts animating towards the given state. An animation that is still running is reversed from
+     * its current values, over the share of the timeline it already covered, or with its current
+     * velocities when a spring drives it.
+     *
+     * @param velocity initial velocity in expansion progress per second, only used by springs.
+     */
+    private void startAnimation(boolean expand, float velocity) {
+        final int slots = mPositionsCount;
+        ensureSlotCapacity(slots);
+
+        if (mAnimator.isRunning()) {
+            final float playTime = mAnimator.getAnimatedFraction() * mAnimator.getDuration();
+            final float iconProgress = getIconProgress(playTime);
+            final float iconVelocity = mFrameVelocity;
+            final float runScale = mRunScale * mAnimator.getAnimatedFraction();
+            for (int slot = 0; slot < slots; slot++) {
+                evaluateSlot(slot, playTime);
+                mSlotStartRemaining[slot] = mFrameRemaining;
+                mSlotStartAlpha[slot] = mFrameAlpha;
+                mSlotStartVelocity[slot] = mFrameVelocity - velocity;
+                // Staggered in the order of the new direction, compressed like the rest of the run
+                mSlotDelay[slot] = getStaggerOrder(slot, slots, expand) * mStaggerDelay * runScale;
+            }
+            mIconStart = iconProgress;
+            mIconStartVelocity = iconVelocity + velocity;
+            mRunScale = runScale;
+            mRestartingAnimation = true;
+            mAnimator.cancel();
+            mRestartingAnimation = false;
+        } else if (mSeeking) {
+            // Continue from the seeked progress over the share of the timeline that is left
+            final float progress = mExpansionProgress;
+            for (int slot = 0; slot < slots; slot++) {
+                mSlotStartRemaining[slot] = 1f - progress;
+                mSlotStartAlpha[slot] = progress;
+                mSlotStartVelocity[slot] = -velocity;
+                mSlotDelay[slot] = 0f;
+            }
+            mIconStart = progress;
+            mIconStartVelocity = velocity;
+            mRunScale = Math.abs((expand ? 1f : 0f) - progress);
+        } else {
+            for (int slot = 0; slot < slots; slot++) {
+                mSlotStartRemaining[slot] = expand ? 1f : 0f;
+                mSlotStartAlpha[slot] = expand ? 0f : 1f;
+                mSlotStartVelocity[slot] = -velocity;
+                mSlotDelay[slot] = getStaggerOrder(slot, slots, expand) * mStaggerDelay;
+            }
+            mIconStart = expand ? 0f : 1f;
+            mIconStartVelocity = velocity;
+            mRunScale = 1f;
+        }
+
+        if (mUseSpring) {
+            limitSlotVelocities(slots, expand);
+        }
 
-            CardView cardView = new CardView(getContext());
-            cardView.setCardBackgroundColor(mCardBackgroundColor);
-            TextView label;
-            if (labelContext != null) {
-                label = new TextView(labelContext);
+        mSeeking = false;
+        mAnimatingExpansion = expand;
+        applyLayerTypes();
+        mAnimator.setDuration(getRunDuration(slots));
+        mAnimator.start();
+    }
+
+    /**
+     * Scales down injected velocities that would swing a button past the envelope the menu was
+     * measured for, so the spring motion never has to be clamped. Past the collapsed position the
+     * buttons are fully transparent, so only the expanded side is bounded.
+     */
+    private void limitSlotVelocities(int slots, boolean expand) {
+        final float target = expand ? 0f : 1f;
+        for (int slot = 0; slot < slots; slot++) {
+            mSlotStartVelocity[slot] = mSpring.limitVelocity(mSlotStartRemaining[slot] - target,
+                    mSlotStartVelocity[slot], -mOvershoot - target);
+        }
+    }
+
+    /**
+     * @return the turn of the given slot, expanding from the closest button and collapsing from the
+     * farthest one.
+     */
+    private static int getStaggerOrder(int slot, int slots, boolean expand) {
+        return expand ? slot : slots - 1 - slot;
+    }
+
+    private long getRunDuration(int slots) {
+        if (!mUseSpring) {
+            return Math.round((ANIMATION_DURATION + Math.max(0, slots - 1) * mStaggerDelay) * mRunScale);
+        }
+
+        final float target = mAnimatingExpansion ? 0f : 1f;
+        float duration = 1000f * mSpring.getSettleTime(mIconStart - (1f - target), mIconStartVelocity);
+        for (int slot = 0; slot < slots; slot++) {
+            final float settleTime = mSpring.getSettleTime(mSlotStartRemaining[slot] - target, mSlotStartVelocity[slot]);
+            duration = Math.max(duration, mSlotDelay[slot] + 1000f * settleTime);
+        }
+        return (long) Math.ceil(duration);
+    }
+
+    /**
+     * Writes the translation and alpha of every animated view for the given time into the timeline,
+     * from the collapsed translations stored by the last layout pass.
+     */
+    private void onAnimationFrame(float playTime) {
+        int slot = -1;
+        for (int i = 0; i < mAnimatedCount; i++) {
+            // A button and its label share their slot, so they are evaluated once
+            if (mAnimatedSlots[i] != slot) {
+                slot = mAnimatedSlots[i];
+                evaluateSlot(slot, playTime);
+            }
+
+            final View view = mAnimatedViews[i];
+            view.setTranslationX(mAnimatedTranslations[2 * i] * mFrameRemaining);
+            view.setTranslationY(mAnimatedTranslations[2 * i + 1] * mFrameRemaining);
+            view.setAlpha(mFrameAlpha);
+        }
+
+        mPlusIcon.setProgress(getIconProgress(playTime));
+
+        if (mFlattenLabels) {
+            // Animating the buttons' properties doesn't redraw the menu, which draws the labels
+            invalidate(mAnimationBounds);
+        }
+    }
+
+    /**
+     * Computes the share of their collapsed translation the views of the given slot have left, their
+     * alpha and, for springs, their velocity at the given time into the run. The results are left in
+     * the mFrame fields so frames don't allocate.
+     */
+    private void evaluateSlot(int slot, float playTime) {
+        final float start = mSlotStartRemaining[slot];
+        final float startAlpha = mSlotStartAlpha[slot];
+        final float target = mAnimatingExpansion ? 0f : 1f;
+
+        if (mUseSpring) {
+            if (playTime >= mAnimator.getDuration()) {
+                mFrameRemaining = target;
+                mFrameVelocity = 0f;
             } else {
-                label = new TextView(getContext());
-                label.setPadding(DEFAULT_LABEL_HORIZONTAL_PADDING,
-                        DEFAULT_LABEL_VERTICAL_PADDING,
-                        DEFAULT_LABEL_HORIZONTAL_PADDING,
-                        DEFAULT_LABEL_VERTICAL_PADDING);
-                label.setMinimumWidth((int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, DEFAULT_LABEL_MIN_WIDTH,
-                        getResources().getDisplayMetrics()));
-                label.setGravity(Gravity.CENTER);
+                final float time = Math.max(0f, playTime - mSlotDelay[slot]) / 1000f;
+                mFrameRemaining = target + mSpring.getDisplacement(start - target, mSlotStartVelocity[slot], time);
+                mFrameVelocity = mSpring.getVelocity(start - target, mSlotStartVelocity[slot], time);
             }
-            if (mLabelsTextColor != 0) {
-                label.setTextColor(mLabelsTextColor);
+            mFrameAlpha = clampFraction(1f - mFrameRemaining);
+            return;
+        }
+
+        final float slotDuration = ANIMATION_DURATION * mRunScale;
+        final float fraction = slotDuration > 0f ? clampFraction((playTime - mSlotDelay[slot]) / slotDuration) : 1f;
+        final float value = (mAnimatingExpansion ? mExpandInterpolator : mCollapseInterpolator).getInterpolation(fraction);
+        mFrameRemaining = start + (target - start) * value;
+        mFrameAlpha = mAnimatingExpansion
+                ? startAlpha + (1f - startAlpha) * mAlphaExpandInterpolator.getInterpolation(fraction)
+                : startAlpha - startAlpha * value;
+        mFrameVelocity = 0f;
+    }
+
+    /**
+     * @return the progress of the plus icon at the given time into the run. Its velocity is left in
+     * mFrameVelocity.
+     */
+    private float getIconProgress(float playTime) {
+        final float target = mAnimatingExpansion ? 1f : 0f;
+
+        if (mUseSpring) {
+            if (playTime >= mAnimator.getDuration()) {
+                mFrameVelocity = 0f;
+                return target;
             }
-            label.setText(button.getTitle());
-            cardView.addView(label);
-            addView(cardView);
+            final float time = playTime / 1000f;
+            mFrameVelocity = mSpring.getVelocity(mIconStart - target, mIconStartVelocity, time);
+            return target + mSpring.getDisplacement(mIconStart - target, mIconStartVelocity, time);
+        }
 
-            button.setTag(R.id.fab_card_label, cardView);
+        final float iconDuration = ANIMATION_DURATION * mRunScale;
+        final float iconFraction = iconDuration > 0f ? clampFraction(playTime / iconDuration) : 1f;
+        mFrameVelocity = 0f;
+        return mIconStart + (target - mIconStart) * mIconInterpolator.getInterpolation(iconFraction);
+    }
 
-            if (expandsHorizontally() && mDisplayHelpLabelsInHorizontalMode) {
-                button.setOnLongClickListener(this);
+    /**
+     * Makes room for the start values of the given number of slots. Slots that appear while an
+     * animation runs start from the state it animates away from.
+     */
+    private void ensureSlotCapacity(int slots) {
+        final int oldLength = mSlotStartRemaining.length;
+        if (oldLength >= slots) {
+            return;
+        }
+
+        float[] remaining = new float[slots];
+        float[] alpha = new float[slots];
+        float[] velocity = new float[slots];
+        float[] delay = new float[slots];
+        System.arraycopy(mSlotStartRemaining, 0, remaining, 0, oldLength);
+        System.arraycopy(mSlotStartAlpha, 0, alpha, 0, oldLength);
+        System.arraycopy(mSlotStartVelocity, 0, velocity, 0, oldLength);
+        System.arraycopy(mSlotDelay, 0, delay, 0, oldLength);
+        for (int slot = oldLength; slot < slots; slot++) {
+            remaining[slot] = mAnimatingExpansion ? 1f : 0f;
+            alpha[slot] = mAnimatingExpansion ? 0f : 1f;
+        }
+        mSlotStartRemaining = remaining;
+        mSlotStartAlpha = alpha;
+        mSlotStartVelocity = velocity;
+        mSlotDelay = delay;
+    }
+
+    @LAYER_POLICY
+    public int getLayerPolicy() {
+        return mLayerPolicy;
+    }
+
+    /**
+     * Selects when the buttons and labels are rendered into hardware layers while they animate.
+     * Their own layer types are restored once the animation ends or is cancelled.
+     */
+    public void setLayerPolicy(@LAYER_POLICY int policy) {
+        if (policy != LAYER_POLICY_NEVER && policy != LAYER_POLICY_ALWAYS && policy != LAYER_POLICY_AUTO) {
+            throw new IllegalArgumentException("Use @LAYER_POLICY constants only!");
+        }
+        mLayerPolicy = policy;
+    }
+
+    private void applyLayerTypes() {
+        if (mLayeredCount > 0 || !isHardwareAccelerated()) {
+            // Already applied by the run being reversed, or layers would be software bitmaps
+            return;
+        }
+        if (mLayerPolicy == LAYER_POLICY_NEVER
+                || (mLayerPolicy == LAYER_POLICY_AUTO && mAnimatedCount < AUTO_LAYER_MIN_VIEWS)) {
+            return;
+        }
+
+        if (mLayeredViews.length < mAnimatedCount) {
+            mLayeredViews = new View[mAnimatedViews.length];
+            mLayeredViewTypes = new int[mAnimatedViews.length];
+        }
+        for (int i = 0; i < mAnimatedCount; i++) {
+            final View view = mAnimatedViews[i];
+            mLayeredViews[i] = view;
+            mLayeredViewTypes[i] = view.getLayerType();
+            if (view.getLayerType() != LAYER_TYPE_HARDWARE) {
+                view.setLayerType(LAYER_TYPE_HARDWARE, null);
             }
         }
+        mLayeredCount = mAnimatedCount;
     }
 
-    private void displayFabLabel(FloatingActionButton button) {
-        if (!expandsHorizontally() || !mDisplayHelpLabelsInHorizontalMode)
+    private void restoreLayerTypes() {
+        for (int i = 0; i < mLayeredCount; i++) {
+            final View view = mLayeredViews[i];
+            if (view.getLayerType() != mLayeredViewTypes[i]) {
+                view.setLayerType(mLayeredViewTypes[i], null);
+            }
+            mLayeredViews[i] = null;
+        }
+        mLayeredCount = 0;
+    }
+
+    private static float clampFraction(float fraction) {
+        return Math.max(0f, Math.min(fraction, 1f));
+    }
+
+    private void addAnimatedView(View view, int slot, float collapsedTranslationX, float collapsedTranslationY) {
+        if (mAnimatedViews.length == mAnimatedCount) {
+            final int capacity = Math.max(2 * mAnimatedCount, 2 * mButtonsCount);
+            View[] views = new View[capacity];
+            System.arraycopy(mAnimatedViews, 0, views, 0, mAnimatedCount);
+            mAnimatedViews = views;
+            float[] translations = new float[2 * capacity];
+            System.arraycopy(mAnimatedTranslations, 0, translations, 0, 2 * mAnimatedCount);
+            mAnimatedTranslations = translations;
+            int[] slots = new int[capacity];
+            System.arraycopy(mAnimatedSlots, 0, slots, 0, mAnimatedCount);
+            mAnimatedSlots = slots;
+        }
+
+        mAnimatedViews[mAnimatedCount] = view;
+        mAnimatedTranslations[2 * mAnimatedCount] = collapsedTranslationX;
+        mAnimatedTranslations[2 * mAnimatedCount + 1] = collapsedTranslationY;
+        mAnimatedSlots[mAnimatedCount] = slot;
+        mAnimatedCount++;
+    }
+
+    private boolean hasLabel(FloatingActionButton button) {
+        return button.getTag(R.id.fab_card_label) != null || button.getTag(R.id.fab_flat_label) != null;
+    }
+
+    /**
+     * @return true if the labels are drawn by the menu itself. Help labels of horizontal menus are
+     * always views, as they fade in and out independently of their buttons.
+     */
+    private boolean useFlatLabels() {
+        return mFlattenLabels && !expandsHorizontally();
+    }
+
+    private void initFlatLabels(Context context) {
+        final float density = getResources().getDisplayMetrics().density;
+        float textSize = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, DEFAULT_LABEL_TEXT_SIZE,
+                getResources().getDisplayMetrics());
+
+        TypedArray theme = context.obtainStyledAttributes(new int[]{android.R.attr.textColorSecondary});
+        int textColor = theme.getColor(0, Color.BLACK);
+        theme.recycle();
+
+        if (mLabelsStyle != 0) {
+            // Same order as the attribute ids, which obtainStyledAttributes requires
+            TypedArray style = context.obtainStyledAttributes(mLabelsStyle, new int[]{android.R.attr.textSize, android.R.attr.textColor});
+            textSize = style.getDimension(0, textSize);
+            textColor = style.getColor(1, textColor);
+            style.recycle();
+        }
+
+        mLabelTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        mLabelTextPaint.setTextSize(textSize);
+        mFlatLabelTextColor = mLabelsTextColor != 0 ? mLabelsTextColor : textColor;
+
+        mLabelBackgroundPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mLabelShadowPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+        mFlatLabelMinWidth = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, DEFAULT_LABEL_MIN_WIDTH,
+                getResources().getDisplayMetrics());
+        mFlatLabelCornerRadius = FLAT_LABEL_CORNER_RADIUS * density;
+        mFlatLabelShadowOffset = FLAT_LABEL_SHADOW_OFFSET * density;
+
+        // Blurred once and shared, since a blur mask filter isn't hardware accelerated on older releases
+        final float shadowRadius = FLAT_LABEL_SHADOW_RADIUS * density;
+        mFlatLabelShadow = FabShadowCache.getLabelShadow(getResources(), mFlatLabelCornerRadius, shadowRadius, FLAT_LABEL_SHADOW_COLOR);
+        mFlatLabelShadowInset = (int) Math.ceil(shadowRadius);
+    }
+
+    /**
+     * Rebuilds the text layout of a flat label if its title changed, and sizes the label like the
+     * padded TextView in a CardView it replaces.
+     */
+    private void measureFlatLabel(FlatLabel label, String title) {
+        if (label.mLayout != null && TextUtils.equals(label.mText, title)) {
             return;
+        }
 
-        final View view = (View) button.getTag(R.id.fab_card_label);
-        AlphaAnimation fadeAnimation = new AlphaAnimation(0f, 1f);
-        fadeAnimation.setDuration(500);
-        fadeAnimation.setInterpolator(new LinearInterpolator());
-        fadeAnimation.setAnimationListener(new Animation.AnimationListener() {
-            @Override
-            public void onAnimationStart(Animation animation) {
-                view.setVisibility(View.VISIBLE);
+        label.mText = title;
+        if (title == null) {
+            label.mLayout = null;
+            label.mWidth = 0;
+            label.mHeight = 0;
+            return;
+        }
+
+        int textWidth = (int) Math.ceil(Layout.getDesiredWidth(title, mLabelTextPaint));
+        label.mLayout = new StaticLayout(title, mLabelTextPaint, textWidth, Layout.Alignment.ALIGN_NORMAL, 1f, 0f, false);
+        label.mWidth = Math.max(mFlatLabelMinWidth, textWidth + 2 * DEFAULT_LABEL_HORIZONTAL_PADDING);
+        label.mHeight = label.mLayout.getHeight() + 2 * DEFAULT_LABEL_VERTICAL_PADDING;
+    }
+
+    private void drawFlatLabels(Canvas canvas) {
+        if (!mLayoutStrategy.showsLabels()) {
+            return;
+        }
+
+        for (int i = 0; i < mButtonsCount; i++) {
+            final View child = getChildAt(i);
+            final FlatLabel label = (FlatLabel) child.getTag(R.id.fab_flat_label);
+            if (label == null || label.mLayout == null || child.getVisibility() != VISIBLE || child.getAlpha() <= 0f) {
+                continue;
             }
 
-            @Override
-            public void onAnimationEnd(Animation animation) {
-                AlphaAnimation fadeAnimation = new AlphaAnimation(1f, 0f);
-                fadeAnimation.setStartOffset(3000);
-                fadeAnimation.setDuration(500);
-                fadeAnimation.setInterpolator(new LinearInterpolator());
-                fadeAnimation.setAnimationListener(new Animation.AnimationListener() {
-                    @Override
-                    public void onAnimationStart(Animation animation) {
-                    }
+            // The labels used to run the same animations as their buttons, so they just follow them
+            final int alpha = Math.round(child.getAlpha() * 255);
+            mLabelRect.set(label.mLeft, label.mTop, label.mLeft + label.mWidth, label.mTop + label.mHeight);
+            mLabelRect.offset(child.getTranslationX(), child.getTranslationY());
+
+            mLabelShadowPaint.setAlpha(alpha);
+            drawFlatLabelShadow(canvas);
+
+            mLabelBackgroundPaint.setColor(mCardBackgroundColor);
+            mLabelBackgroundPaint.setAlpha(Color.alpha(mCardBackgroundColor) * alpha / 255);
+            canvas.drawRoundRect(mLabelRect, mFlatLabelCornerRadius, mFlatLabelCornerRadius, mLabelBackgroundPaint);
+
+            mLabelTextPaint.setColor(mFlatLabelTextColor);
+            mLabelTextPaint.setAlpha(Color.alpha(mFlatLabelTextColor) * alpha / 255);
+            int count = canvas.save();
+            canvas.translate(mLabelRect.left + (label.mWidth - label.mLayout.getWidth()) / 2f,
+                    mLabelRect.top + DEFAULT_LABEL_VERTICAL_PADDING);
+            label.mLayout.draw(canvas);
+            canvas.restoreToCount(count);
+        }
+    }
 
-                    @Override
-                    public void onAnimationEnd(Animation animation) {
-                        view.setVisibility(View.GONE);
-                    }
+    /**
+     * Draws the shadow bitmap around {@link #mLabelRect} as a nine-patch, keeping its blurred corners
+     * and stretching its edges.
+     */
+    private void drawFlatLabelShadow(Canvas canvas) {
+        final Bitmap shadow = mFlatLabelShadow;
+        final int slice = (shadow.getWidth() - 1) / 2;
+        final float left = mLabelRect.left - mFlatLabelShadowInset;
+        final float top = mLabelRect.top - mFlatLabelShadowInset + mFlatLabelShadowOffset;
+        final float right = mLabelRect.right + mFlatLabelShadowInset;
+        final float bottom = mLabelRect.bottom + mFlatLabelShadowInset + mFlatLabelShadowOffset;
+
+        for (int row = 0; row < 3; row++) {
+            final int sourceTop = row == 0 ? 0 : row == 1 ? slice : slice + 1;
+            final int sourceBottom = row == 0 ? slice : row == 1 ? slice + 1 : shadow.getHeight();
+            final float targetTop = row == 0 ? top : row == 1 ? top + slice : bottom - slice;
+            final float targetBottom = row == 0 ? top + slice : row == 1 ? bottom - slice : bottom;
+            if (targetBottom <= targetTop) {
+                continue;
+            }
 
-                    @Override
-                    public void onAnimationRepeat(Animation animation) {
-                    }
-                });
-                view.startAnimation(fadeAnimation);
+            for (int column = 0; column < 3; column++) {
+                final int sourceLeft = column == 0 ? 0 : column == 1 ? slice : slice + 1;
+                final int sourceRight = column == 0 ? slice : column == 1 ? slice + 1 : shadow.getWidth();
+                final float targetLeft = column == 0 ? left : column == 1 ? left + slice : right - slice;
+                final float targetRight = column == 0 ? left + slice : column == 1 ? right - slice : right;
+                if (targetRight <= targetLeft) {
+                    continue;
+                }
+
+                mShadowSource.set(sourceLeft, sourceTop, sourceRight, sourceBottom);
+                mShadowTarget.set(targetLeft, targetTop, targetRight, targetBottom);
+                canvas.drawBitmap(shadow, mShadowSource, mShadowTarget, mLabelShadowPaint);
             }
+        }
+    }
 
-            @Override
-            public void onAnimationRepeat(Animation animation) {
+    /**
+     * Clicks the button of a flat label that is tapped while the menu is expanded.
+     *
+     * @return true if the event belongs to a label tap.
+     */
+    private boolean onFlatLabelTouchEvent(MotionEvent ev) {
+        switch (ev.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mPressedLabelButton = mExpanded ? findFlatLabelButton(ev.getX(), ev.getY()) : null;
+                return mPressedLabelButton != null;
+            case MotionEvent.ACTION_UP:
+                FloatingActionButton button = mPressedLabelButton;
+                mPressedLabelButton = null;
+                if (button != null && findFlatLabelButton(ev.getX(), ev.getY()) == button) {
+                    button.performClick();
+                }
+                return button != null;
+            case MotionEvent.ACTION_CANCEL:
+                mPressedLabelButton = null;
+                return false;
+        }
+        return mPressedLabelButton != null;
+    }
+
+    private FloatingActionButton findFlatLabelButton(float x, float y) {
+        if (!mLayoutStrategy.showsLabels()) {
+            return null;
+        }
+
+        for (int i = 0; i < mButtonsCount; i++) {
+            final View child = getChildAt(i);
+            final FlatLabel label = (FlatLabel) child.getTag(R.id.fab_flat_label);
+            if (label == null || label.mLayout == null || child.getVisibility() != VISIBLE) {
+                continue;
             }
-        });
-        view.startAnimation(fadeAnimation);
+
+            float left = label.mLeft + child.getTranslationX();
+            float top = label.mTop + child.getTranslationY();
+            if (x >= left && x < left + label.mWidth && y >= top && y < top + label.mHeight) {
+                return (FloatingActionButton) child;
+            }
+        }
+        return null;
     }
 
-    public interface OnFloatingActionsMenuUpdateListener {
-        void onMenuExpanded();
+    /**
+     * Called when the title of a button without a card label changes.
+     */
+    void onButtonTitleChanged(FloatingActionButton button) {
+        if (!hasLabels() || button.getParent() != this) {
+            return;
+        }
 
-        void onMenuCollapsed();
+        if (!useFlatLabels()) {
+            // The button had no title when it was added, so it has no label yet
+            setUpButton(button);
+            requestLayout();
+            return;
+        }
+
+        FlatLabel label = (FlatLabel) button.getTag(R.id.fab_flat_label);
+        if (label == null) {
+            if (button.getTitle() == null) {
+                return;
+            }
+            label = new FlatLabel();
+            button.setTag(R.id.fab_flat_label, label);
+        }
+
+        final boolean hadText = label.mLayout != null;
+        final int oldWidth = label.mWidth;
+        final int oldHeight = label.mHeight;
+        measureFlatLabel(label, button.getTitle());
+        if (hadText && label.mLayout != null && label.mWidth == oldWidth && label.mHeight == oldHeight) {
+            // Same size and position, so only the text needs to be drawn again
+            invalidate((int) (label.mLeft + button.getTranslationX()),
+                    (int) (label.mTop + button.getTranslationY()),
+                    (int) Math.ceil(label.mLeft + label.mWidth + button.getTranslationX()),
+                    (int) Math.ceil(label.mTop + label.mHeight + mFlatLabelShadowOffset + button.getTranslationY()));
+            return;
+        }
+
+        // Flat labels are sized during measure and positioned during layout
+        invalidateMeasureCache();
+        invalidateLayoutCache();
+        requestLayout();
+        invalidate();
     }
 
-    private static class RotatingDrawable extends LayerDrawable {
-        private float mRotation;
+    /**
+     * @return an editor for the action button with the given id, or null if the menu has no such
+     * button. Only the parts of the button the applied changes touch are updated, so the button keeps
+     * its view, label and animators, and the menu is only laid out again if a size changes.
+     */
+    public FloatingActionButton.Editor editAction(@IdRes int id) {
+        for (int i = 0; i < mButtonsCount; i++) {
+            View child = getChildAt(i);
+            if (child != mAddButton && child.getId() == id) {
+                return ((FloatingActionButton) child).edit();
+            }
+        }
+        return null;
+    }
 
-        public RotatingDrawable(Drawable drawable) {
-            super(new Drawable[]{drawable});
+    private boolean hasLabels() {
+        return mLabelsStyle != 0 || mLabelsTextColor != 0;
+    }
+
+    private CardView createLabel(FloatingActionButton button) {
+        if (mLabelContext == null && mLabelsStyle != 0) {
+            mLabelContext = new ContextThemeWrapper(getContext(), mLabelsStyle);
         }
 
-        @SuppressWarnings("UnusedDeclaration")
-        public float getRotation() {
-            return mRotation;
+        CardView cardView = new CardView(getContext());
+        cardView.setCardBackgroundColor(mCardBackgroundColor);
+        TextView label;
+        if (mLabelContext != null) {
+            label = new LabelTextView(mLabelContext);
+        } else {
+            label = new LabelTextView(getContext());
+            label.setPadding(DEFAULT_LABEL_HORIZONTAL_PADDING,
+                    DEFAULT_LABEL_VERTICAL_PADDING,
+                    DEFAULT_LABEL_HORIZONTAL_PADDING,
+                    DEFAULT_LABEL_VERTICAL_PADDING);
+            label.setMinimumWidth((int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, DEFAULT_LABEL_MIN_WIDTH,
+                    getResources().getDisplayMetrics()));
+            label.setGravity(Gravity.CENTER);
         }
+        if (mLabelsTextColor != 0) {
+            label.setTextColor(mLabelsTextColor);
+        }
+        label.setText(button.getTitle());
+        cardView.addView(label);
+
+        button.setTag(R.id.fab_card_label, cardView);
 
-        @SuppressWarnings("UnusedDeclaration")
-        public void setRotation(float rotation) {
-            mRotation = rotation;
-            invalidateSelf();
+        if (expandsHorizontally() && mDisplayHelpLabelsInHorizontalMode) {
+            button.setOnLongClickListener(this);
         }
+        return cardView;
+    }
 
-        @Override
-        public void draw(Canvas canvas) {
-            canvas.save();
-            canvas.rotate(mRotation, getBounds().centerX(), getBounds().centerY());
-            super.draw(canvas);
-            canvas.restore();
+    private void displayFabLabel(FloatingActionButton button) {
+        if (!expandsHorizontally() || !mDisplayHelpLabelsInHorizontalMode) {
+            return;
+        }
+
+        final View label = (View) button.getTag(R.id.fab_card_label);
+        if (label != null) {
+            mLabelTooltips.show(label);
+        }
+    }
+
+    public interface OnFloatingActionsMenuUpdateListener {
+        void onMenuExpanded();
+
+        void onMenuCollapsed();
+    }
+
+    /**
+     * Supplies the actions of a menu in adapter mode. The menu only creates the buttons that fit on
+     * screen and binds them again as the expanded stack scrolls, so its cost doesn't grow with the
+     * number of actions. Position 0 is the closest to the add button.
+     */
+    public static abstract class Adapter {
+        private FloatingActionsMenu mMenu;
+
+        public abstract int getCount();
+
+        /**
+         * Creates a button that is bound with {@link #bindButton(FloatingActionButton, int)} before it
+         * is shown. All buttons are expected to have the same size.
+         */
+        public FloatingActionButton createButton(Context context) {
+            return new FloatingActionButton(context);
+        }
+
+        /**
+         * Binds a new or recycled button to the action at the given position, i.e. its colors, icon,
+         * title and click listener.
+         */
+        public abstract void bindButton(FloatingActionButton button, int position);
+
+        public void notifyDataSetChanged() {
+            if (mMenu != null) {
+                mMenu.onAdapterDataSetChanged();
+            }
         }
     }
 
@@ -721,56 +2235,74 @@ public class FloatingActionsMenu extends ViewGroup implements View.OnLongClickLi
         }
     }
 
+    /**
+     * A label drawn by the menu in place of a CardView child, positioned next to its button.
+     */
+    private static class FlatLabel {
+        private String mText;
+        private StaticLayout mLayout;
+        private int mWidth;
+        private int mHeight;
+        private int mLeft;
+        private int mTop;
+    }
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({LAYER_POLICY_NEVER, LAYER_POLICY_ALWAYS, LAYER_POLICY_AUTO})
+    public @interface LAYER_POLICY {
+    }
+
     private class LayoutParams extends ViewGroup.LayoutParams {
 
-        private ObjectAnimator mExpandDir = new ObjectAnimator();
-        private ObjectAnimator mExpandAlpha = new ObjectAnimator();
-        private ObjectAnimator mCollapseDir = new ObjectAnimator();
-        private ObjectAnimator mCollapseAlpha = new ObjectAnimator();
-        private boolean animationsSetToPlay;
+        private int mAdapterPosition = -1;
+        private int mLayoutGeneration = -1;
+        private MenuLayoutStrategy mLayoutStrategy;
+        private int mLayoutSpacing;
+        private int mLayoutLeft;
+        private int mLayoutTop;
+        private int mLayoutWidth;
+        private int mLayoutHeight;
+        private float mLayoutTranslationX;
+        private float mLayoutTranslationY;
 
         public LayoutParams(ViewGroup.LayoutParams source) {
             super(source);
+        }
 
-            mExpandDir.setInterpolator(sExpandInterpolator);
-            mExpandAlpha.setInterpolator(sAlphaExpandInterpolator);
-            mCollapseDir.setInterpolator(sCollapseInterpolator);
-            mCollapseAlpha.setInterpolator(sCollapseInterpolator);
-
-            mCollapseAlpha.setProperty(View.ALPHA);
-            mCollapseAlpha.setFloatValues(1f, 0f);
-
-            mExpandAlpha.setProperty(View.ALPHA);
-            mExpandAlpha.setFloatValues(0f, 1f);
-
-            switch (mExpandDirection) {
-                case EXPAND_UP:
-                case EXPAND_DOWN:
-                    mCollapseDir.setProperty(View.TRANSLATION_Y);
-                    mExpandDir.setProperty(View.TRANSLATION_Y);
-                    break;
-                case EXPAND_LEFT:
-                case EXPAND_RIGHT:
-                    mCollapseDir.setProperty(View.TRANSLATION_X);
-                    mExpandDir.setProperty(View.TRANSLATION_X);
-                    break;
-            }
-        }
-
-        public void setAnimationsTarget(View view) {
-            mCollapseAlpha.setTarget(view);
-            mCollapseDir.setTarget(view);
-            mExpandAlpha.setTarget(view);
-            mExpandDir.setTarget(view);
-
-            // Now that the animations have targets, set them to be played
-            if (!animationsSetToPlay) {
-                mCollapseAnimation.play(mCollapseAlpha);
-                mCollapseAnimation.play(mCollapseDir);
-                mExpandAnimation.play(mExpandAlpha);
-                mExpandAnimation.play(mExpandDir);
-                animationsSetToPlay = true;
-            }
+        /**
+         * Stores the layout of the view, keyed by its measured size, position, collapsed translation,
+         * the layout strategy and the spacing.
+         *
+         * @return true if any of them changed or the view requested a layout.
+         */
+        boolean updateLayout(View view, int left, int top, float translationX, float translationY) {
+            final int width = view.getMeasuredWidth();
+            final int height = view.getMeasuredHeight();
+            boolean changed = mLayoutGeneration != FloatingActionsMenu.this.mLayoutGeneration
+                    || mLayoutStrategy != FloatingActionsMenu.this.mLayoutStrategy
+                    || mLayoutSpacing != mButtonSpacing
+                    || mLayoutLeft != left
+                    || mLayoutTop != top
+                    || mLayoutWidth != width
+                    || mLayoutHeight != height
+                    || mLayoutTranslationX != translationX
+                    || mLayoutTranslationY != translationY
+                    || view.isLayoutRequested();
+
+            mLayoutGeneration = FloatingActionsMenu.this.mLayoutGeneration;
+            mLayoutStrategy = FloatingActionsMenu.this.mLayoutStrategy;
+            mLayoutSpacing = mButtonSpacing;
+            mLayoutLeft = left;
+            mLayoutTop = top;
+            mLayoutWidth = width;
+            mLayoutHeight = height;
+            mLayoutTranslationX = translationX;
+            mLayoutTranslationY = translationY;
+            return changed;
+        }
+
+        void invalidateLayout() {
+            mLayoutGeneration = -1;
         }
     }
 }
\ No newline at end of file
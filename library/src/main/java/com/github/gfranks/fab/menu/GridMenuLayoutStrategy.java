@@ -0,0 +1,69 @@
+/*
+    Copyright (C) 2014 Jerzy Chalupski
+
+    Modified by: Garrett Franks 2015
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+package com.github.gfranks.fab.menu;
+
+/**
+ * Lays the action buttons out in rows of uniform cells, starting next to the add button. Suited to
+ * menus with many actions.
+ */
+public final class GridMenuLayoutStrategy implements MenuLayoutStrategy {
+
+    private final int mColumns;
+    private final boolean mExpandUp;
+    private final boolean mExpandLeft;
+
+    /**
+     * @param columns    the number of buttons per row.
+     * @param expandUp   true to stack the rows above the add button, false to stack them below.
+     * @param expandLeft true to fill the rows from the add button's column to the left, false to
+     *                   fill them to the right.
+     */
+    public GridMenuLayoutStrategy(int columns, boolean expandUp, boolean expandLeft) {
+        if (columns < 1) {
+            throw new IllegalArgumentException("A grid needs at least one column");
+        }
+        mColumns = columns;
+        mExpandUp = expandUp;
+        mExpandLeft = expandLeft;
+    }
+
+    @Override
+    public void computePositions(int count, float[] sizes, float addButtonWidth, float addButtonHeight, float spacing,
+                                 float[] collapsed, float[] expanded) {
+        float cellSize = 0f;
+        for (int i = 0; i < 2 * count; i++) {
+            cellSize = Math.max(cellSize, sizes[i]);
+        }
+
+        final float pitch = cellSize + spacing;
+        final float firstRow = addButtonHeight / 2f + spacing + cellSize / 2f;
+        final int horizontalSign = mExpandLeft ? -1 : 1;
+        final int verticalSign = mExpandUp ? -1 : 1;
+        for (int i = 0; i < count; i++) {
+            collapsed[2 * i] = 0f;
+            collapsed[2 * i + 1] = 0f;
+            expanded[2 * i] = horizontalSign * (i % mColumns) * pitch;
+            expanded[2 * i + 1] = verticalSign * (firstRow + (i / mColumns) * pitch);
+        }
+    }
+
+    @Override
+    public boolean showsLabels() {
+        return false;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+    Copyright (C) 2014 Jerzy Chalupski
+
+    Modified by: Garrett Franks 2015
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.github.gfranks.fab.menu;
+
+import android.content.Context;
+import android.text.Layout;
+import android.text.TextUtils;
+import android.widget.TextView;
+
+/**
+ * Text of a card label. A wrap content TextView lays itself out again for every new text, so
+ * {@link #setLabelText(CharSequence)} only lets the layout request through when the new text
+ * doesn't fit on a single line of the current width.
+ */
+final class LabelTextView extends TextView {
+
+    private boolean mSuppressLayout;
+
+    LabelTextView(Context context) {
+        super(context);
+    }
+
+    /**
+     * Sets the text, and only requests a layout of the label and the menu if its size changes.
+     */
+    void setLabelText(CharSequence text) {
+        mSuppressLayout = keepsSize(text);
+        setText(text);
+        mSuppressLayout = false;
+    }
+
+    @Override
+    public void requestLayout() {
+        if (!mSuppressLayout) {
+            super.requestLayout();
+        }
+    }
+
+    /**
+     * @return true if the label is laid out and the text would be measured to the same size, i.e.
+     * it is a single line that is either as wide as the current one or, when the current width comes
+     * from a minimum width, fits into it.
+     */
+    private boolean keepsSize(CharSequence text) {
+        final Layout layout = getLayout();
+        if (layout == null || isLayoutRequested() || layout.getLineCount() != 1
+                || text == null || TextUtils.indexOf(text, '\n') >= 0) {
+            return false;
+        }
+
+        final int contentWidth = getWidth() - getCompoundPaddingLeft() - getCompoundPaddingRight();
+        final int currentWidth = (int) Math.ceil(Layout.getDesiredWidth(getText(), getPaint()));
+        final int newWidth = (int) Math.ceil(Layout.getDesiredWidth(text, getPaint()));
+        return newWidth <= contentWidth && (newWidth == currentWidth || currentWidth < contentWidth);
+    }
+}
@@ -0,0 +1,197 @@
+/*
+    Copyright (C) 2014 Jerzy Chalupski
+
+    Modified by: Garrett Franks 2015
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.github.gfranks.fab.menu;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ObjectAnimator;
+import android.os.SystemClock;
+import android.view.View;
+import android.view.animation.LinearInterpolator;
+
+import java.util.ArrayList;
+
+/**
+ * Shows the help labels of a {@link FloatingActionsMenu} as tooltips on long press. Each label keeps
+ * one fade in and one fade out animator for its lifetime, and a single timer posted on the menu
+ * dismisses every label whose hold time ran out, so showing a tooltip doesn't allocate after the
+ * first time.
+ */
+final class LabelTooltipController {
+
+    private static final int FADE_DURATION = 500;
+    private static final int HOLD_DURATION = 3000;
+
+    private final View mHost;
+    // Labels that are showing or fading out
+    private final ArrayList<Tooltip> mTooltips = new ArrayList<Tooltip>();
+    private final Runnable mDismissRunnable = new Runnable() {
+        @Override
+        public void run() {
+            dismissExpired();
+        }
+    };
+    private long mScheduledTime;
+
+    LabelTooltipController(View host) {
+        mHost = host;
+    }
+
+    /**
+     * Fades the label in, or keeps it showing, and restarts its hold time. A repeated long press
+     * therefore extends the tooltip rather than queueing another fade.
+     */
+    void show(View label) {
+        Tooltip tooltip = getTooltip(label);
+        if (tooltip.mFadeOut.isRunning()) {
+            tooltip.mFadeOut.cancel();
+        }
+        tooltip.mShowing = true;
+        if (!tooltip.mActive) {
+            tooltip.mActive = true;
+            mTooltips.add(tooltip);
+        }
+        if (label.getVisibility() != View.VISIBLE) {
+            label.setVisibility(View.VISIBLE);
+            tooltip.mFadeIn.setFloatValues(0f, 1f);
+            tooltip.mFadeIn.start();
+        } else if (label.getAlpha() < 1f && !tooltip.mFadeIn.isRunning()) {
+            // Caught while fading out, so fade back in from where it is
+            tooltip.mFadeIn.setFloatValues(label.getAlpha(), 1f);
+            tooltip.mFadeIn.start();
+        }
+
+        tooltip.mDismissTime = SystemClock.uptimeMillis() + FADE_DURATION + HOLD_DURATION;
+        schedule();
+    }
+
+    /**
+     * @return true if the label is showing as a tooltip, i.e. its visibility is managed here.
+     */
+    boolean isShowing(View label) {
+        final Tooltip tooltip = (Tooltip) label.getTag(R.id.fab_label_tooltip);
+        return tooltip != null && tooltip.mActive;
+    }
+
+    /**
+     * Stops the dismiss timer and the fades and hides every showing label, e.g. when the menu is
+     * detached from its window.
+     */
+    void cancel() {
+        mHost.removeCallbacks(mDismissRunnable);
+        mScheduledTime = 0;
+        for (int i = mTooltips.size() - 1; i >= 0; i--) {
+            final Tooltip tooltip = mTooltips.get(i);
+            tooltip.mShowing = false;
+            tooltip.mActive = false;
+            tooltip.mFadeIn.cancel();
+            tooltip.mFadeOut.cancel();
+            tooltip.mLabel.setVisibility(View.GONE);
+        }
+        mTooltips.clear();
+    }
+
+    private Tooltip getTooltip(View label) {
+        Tooltip tooltip = (Tooltip) label.getTag(R.id.fab_label_tooltip);
+        if (tooltip == null) {
+            tooltip = new Tooltip(label);
+            label.setTag(R.id.fab_label_tooltip, tooltip);
+        }
+        return tooltip;
+    }
+
+    private void schedule() {
+        long nextTime = Long.MAX_VALUE;
+        for (int i = 0; i < mTooltips.size(); i++) {
+            final Tooltip tooltip = mTooltips.get(i);
+            if (tooltip.mShowing) {
+                nextTime = Math.min(nextTime, tooltip.mDismissTime);
+            }
+        }
+        if (nextTime == mScheduledTime) {
+            return;
+        }
+
+        mHost.removeCallbacks(mDismissRunnable);
+        mScheduledTime = 0;
+        if (nextTime != Long.MAX_VALUE) {
+            mScheduledTime = nextTime;
+            mHost.postDelayed(mDismissRunnable, Math.max(0, nextTime - SystemClock.uptimeMillis()));
+        }
+    }
+
+    private void dismissExpired() {
+        mScheduledTime = 0;
+        final long now = SystemClock.uptimeMillis();
+        for (int i = 0; i < mTooltips.size(); i++) {
+            final Tooltip tooltip = mTooltips.get(i);
+            if (tooltip.mShowing && tooltip.mDismissTime <= now) {
+                tooltip.mShowing = false;
+                if (tooltip.mFadeIn.isRunning()) {
+                    tooltip.mFadeIn.cancel();
+                }
+                tooltip.mFadeOut.setFloatValues(tooltip.mLabel.getAlpha(), 0f);
+                tooltip.mFadeOut.start();
+            }
+        }
+        schedule();
+    }
+
+    private final class Tooltip {
+        private final View mLabel;
+        private final ObjectAnimator mFadeIn;
+        private final ObjectAnimator mFadeOut;
+        private boolean mShowing;
+        private boolean mActive;
+        private boolean mFadeOutCanceled;
+        private long mDismissTime;
+
+        Tooltip(View label) {
+            mLabel = label;
+
+            mFadeIn = ObjectAnimator.ofFloat(label, View.ALPHA, 0f, 1f);
+            mFadeIn.setDuration(FADE_DURATION);
+            mFadeIn.setInterpolator(new LinearInterpolator());
+
+            mFadeOut = ObjectAnimator.ofFloat(label, View.ALPHA, 1f, 0f);
+            mFadeOut.setDuration(FADE_DURATION);
+            mFadeOut.setInterpolator(new LinearInterpolator());
+            mFadeOut.addListener(new AnimatorListenerAdapter() {
+                @Override
+                public void onAnimationStart(Animator animation) {
+                    mFadeOutCanceled = false;
+                }
+
+                @Override
+                public void onAnimationCancel(Animator animation) {
+                    mFadeOutCanceled = true;
+                }
+
+                @Override
+                public void onAnimationEnd(Animator animation) {
+                    if (!mFadeOutCanceled) {
+                        mLabel.setVisibility(View.GONE);
+                        mActive = false;
+                        mTooltips.remove(Tooltip.this);
+                    }
+                }
+            });
+        }
+    }
+}
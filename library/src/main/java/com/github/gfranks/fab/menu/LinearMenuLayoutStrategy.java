@@ -0,0 +1,81 @@
+/*
+    Copyright (C) 2014 Jerzy Chalupski
+
+    Modified by: Garrett Franks 2015
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+package com.github.gfranks.fab.menu;
+
+/**
+ * Stacks the action buttons in a line next to the add button, in one of the
+ * {@link FloatingActionsMenu} expand directions. Collapsed buttons are aligned with the leading
+ * edge of the add button.
+ */
+public final class LinearMenuLayoutStrategy implements MenuLayoutStrategy {
+
+    private final int mDirection;
+
+    /**
+     * @param direction one of {@link FloatingActionsMenu#EXPAND_UP},
+     *                  {@link FloatingActionsMenu#EXPAND_DOWN}, {@link FloatingActionsMenu#EXPAND_LEFT}
+     *                  or {@link FloatingActionsMenu#EXPAND_RIGHT}.
+     */
+    public LinearMenuLayoutStrategy(int direction) {
+        if (direction < FloatingActionsMenu.EXPAND_UP || direction > FloatingActionsMenu.EXPAND_RIGHT) {
+            throw new IllegalArgumentException("Unknown expand direction: " + direction);
+        }
+        mDirection = direction;
+    }
+
+    public int getDirection() {
+        return mDirection;
+    }
+
+    public boolean isHorizontal() {
+        return mDirection == FloatingActionsMenu.EXPAND_LEFT || mDirection == FloatingActionsMenu.EXPAND_RIGHT;
+    }
+
+    /**
+     * @return -1 if the buttons are stacked towards negative coordinates (up or left), 1 otherwise.
+     */
+    int getSign() {
+        return mDirection == FloatingActionsMenu.EXPAND_UP || mDirection == FloatingActionsMenu.EXPAND_LEFT ? -1 : 1;
+    }
+
+    @Override
+    public void computePositions(int count, float[] sizes, float addButtonWidth, float addButtonHeight, float spacing,
+                                 float[] collapsed, float[] expanded) {
+        final boolean horizontal = isHorizontal();
+        final int axis = horizontal ? 0 : 1;
+        final int sign = getSign();
+        final float addButtonSize = horizontal ? addButtonWidth : addButtonHeight;
+
+        float offset = addButtonSize / 2f + spacing;
+        for (int i = 0; i < count; i++) {
+            final float size = sizes[2 * i + axis];
+
+            collapsed[2 * i + axis] = (size - addButtonSize) / 2f;
+            collapsed[2 * i + 1 - axis] = 0f;
+            expanded[2 * i + axis] = sign * (offset + size / 2f);
+            expanded[2 * i + 1 - axis] = 0f;
+
+            offset += size + spacing;
+        }
+    }
+
+    @Override
+    public boolean showsLabels() {
+        return !isHorizontal();
+    }
+}
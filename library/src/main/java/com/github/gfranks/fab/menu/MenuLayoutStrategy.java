@@ -0,0 +1,51 @@
+/*
+    Copyright (C) 2014 Jerzy Chalupski
+
+    Modified by: Garrett Franks 2015
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+package com.github.gfranks.fab.menu;
+
+/**
+ * Places the action buttons of a {@link FloatingActionsMenu}. The positions are computed once per
+ * measure pass into primitive arrays, and the expand and collapse animations only interpolate
+ * between them.
+ *
+ * @see LinearMenuLayoutStrategy
+ * @see ArcMenuLayoutStrategy
+ * @see GridMenuLayoutStrategy
+ */
+public interface MenuLayoutStrategy {
+
+    /**
+     * Computes the centers of the visible action buttons, relative to the center of the add button.
+     * Buttons are ordered from the one closest to the add button, and the x and y coordinates of
+     * button i are stored at index 2 * i and 2 * i + 1.
+     *
+     * @param count           the number of visible action buttons.
+     * @param sizes           the measured widths and heights of the buttons.
+     * @param addButtonWidth  the measured width of the add button.
+     * @param addButtonHeight the measured height of the add button.
+     * @param spacing         the spacing between two buttons.
+     * @param collapsed       receives the centers of the buttons while the menu is collapsed.
+     * @param expanded        receives the centers of the buttons while the menu is expanded.
+     */
+    void computePositions(int count, float[] sizes, float addButtonWidth, float addButtonHeight, float spacing,
+                          float[] collapsed, float[] expanded);
+
+    /**
+     * @return true if the buttons' labels are shown, right aligned to the left of the buttons.
+     */
+    boolean showsLabels();
+}
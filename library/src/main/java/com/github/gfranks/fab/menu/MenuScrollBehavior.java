@@ -0,0 +1,167 @@
+/*
+    Copyright (C) 2014 Jerzy Chalupski
+
+    Modified by: Garrett Franks 2015
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.github.gfranks.fab.menu;
+
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+
+/**
+ * Slides a {@link FloatingActionsMenu} out while a view is scrolled down and back in while it is
+ * scrolled up. Works with a ScrollView, a ListView, a RecyclerView or any other view that scrolls
+ * its content or its children, without depending on any of them.
+ * <p/>
+ * Scroll events are accumulated until they cover the touch slop in one direction, and the menu is
+ * only told to slide when it isn't already heading that way, so a fast fling never starts redundant
+ * animations.
+ */
+public final class MenuScrollBehavior implements ViewTreeObserver.OnScrollChangedListener, View.OnAttachStateChangeListener {
+
+    private static final int DIRECTION_DOWN = 1;
+    private static final int DIRECTION_UP = -1;
+
+    private final FloatingActionsMenu mMenu;
+    private final View mScrollingView;
+    private final int mThreshold;
+    private ViewTreeObserver mObserver;
+    private int mLastScrollY;
+    private View mAnchor;
+    private int mAnchorTop;
+    private int mAccumulated;
+
+    private MenuScrollBehavior(FloatingActionsMenu menu, View scrollingView) {
+        mMenu = menu;
+        mScrollingView = scrollingView;
+        mThreshold = ViewConfiguration.get(scrollingView.getContext()).getScaledTouchSlop();
+    }
+
+    /**
+     * Starts hiding and showing the menu as the given view scrolls, until {@link #detach()} is
+     * called.
+     */
+    public static MenuScrollBehavior attach(FloatingActionsMenu menu, View scrollingView) {
+        MenuScrollBehavior behavior = new MenuScrollBehavior(menu, scrollingView);
+        scrollingView.addOnAttachStateChangeListener(behavior);
+        if (scrollingView.getWindowToken() != null) {
+            behavior.onViewAttachedToWindow(scrollingView);
+        }
+        return behavior;
+    }
+
+    /**
+     * Stops following the scrolling view. The menu is left as it is.
+     */
+    public void detach() {
+        mScrollingView.removeOnAttachStateChangeListener(this);
+        onViewDetachedFromWindow(mScrollingView);
+    }
+
+    /**
+     * Reports a vertical scroll of the given number of pixels, positive when scrolling down. Only
+     * needed for views that scroll without notifying the view tree, e.g. from a
+     * RecyclerView.OnScrollListener when the view is not attached through {@link #attach}.
+     */
+    public void onScrolled(int dy) {
+        if (dy == 0) {
+            return;
+        }
+
+        final int direction = dy > 0 ? DIRECTION_DOWN : DIRECTION_UP;
+        if (direction != (mAccumulated > 0 ? DIRECTION_DOWN : DIRECTION_UP)) {
+            mAccumulated = 0;
+        }
+        mAccumulated += dy;
+
+        // Back at the top there's nothing left to uncover, so the menu always comes back
+        if (direction == DIRECTION_UP && !ViewCompat.canScrollVertically(mScrollingView, -1)) {
+            setDirection(DIRECTION_UP);
+        } else if (Math.abs(mAccumulated) >= mThreshold) {
+            setDirection(direction);
+        }
+    }
+
+    @Override
+    public void onScrollChanged() {
+        // Called for any scroll in the window, a view that didn't move reports no delta
+        final int scrollY = mScrollingView.getScrollY();
+        int dy = scrollY - mLastScrollY;
+        mLastScrollY = scrollY;
+
+        if (dy == 0 && mScrollingView instanceof ViewGroup) {
+            dy = getChildrenScroll((ViewGroup) mScrollingView);
+        }
+        onScrolled(dy);
+    }
+
+    @Override
+    public void onViewAttachedToWindow(View v) {
+        if (mObserver == null) {
+            mObserver = v.getViewTreeObserver();
+            mObserver.addOnScrollChangedListener(this);
+            mLastScrollY = v.getScrollY();
+            mAnchor = null;
+        }
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(View v) {
+        if (mObserver != null) {
+            if (mObserver.isAlive()) {
+                mObserver.removeOnScrollChangedListener(this);
+            }
+            mObserver = null;
+            mAnchor = null;
+        }
+    }
+
+    /**
+     * @return how far the children of a view that scrolls by moving them (ListView, RecyclerView)
+     * moved up since the last event, or 0 if that can't be told.
+     */
+    private int getChildrenScroll(ViewGroup group) {
+        int dy = 0;
+        final View anchor = mAnchor;
+        if (anchor != null && anchor.getParent() == group) {
+            dy = mAnchorTop - anchor.getTop();
+            // A recycled anchor rebound at the other end jumps by about the height of the view
+            if (Math.abs(dy) > group.getHeight() / 2) {
+                dy = 0;
+            }
+        }
+
+        // The middle child is the least likely to be recycled before the next event
+        final int count = group.getChildCount();
+        mAnchor = count > 0 ? group.getChildAt(count / 2) : null;
+        mAnchorTop = mAnchor != null ? mAnchor.getTop() : 0;
+        return dy;
+    }
+
+    private void setDirection(int direction) {
+        mAccumulated = 0;
+        if ((direction == DIRECTION_DOWN) != mMenu.isSlidOut()) {
+            if (direction == DIRECTION_DOWN) {
+                mMenu.slideOutMenu();
+            } else {
+                mMenu.slideInMenu();
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+    Copyright (C) 2014 Jerzy Chalupski
+
+    Modified by: Garrett Franks 2015
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.github.gfranks.fab.menu;
+
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.Paint.Style;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+
+/**
+ * The plus icon of {@link AddFloatingActionButton}. Its progress morphs the plus into an X by
+ * rotating it, without reallocating any geometry.
+ */
+public class PlusIconDrawable extends Drawable {
+
+    /**
+     * Rotation of the icon at a progress of 1, turning the plus into an X.
+     */
+    public static final float EXPANDED_ROTATION = 90f + 45f;
+
+    private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF mHorizontalBar = new RectF();
+    private final RectF mVerticalBar = new RectF();
+    private PlusState mState;
+    private float mProgress;
+    private float mCenterX;
+    private float mCenterY;
+
+    public PlusIconDrawable(int color, float iconSize, float plusSize, float plusStroke) {
+        this(new PlusState(color, iconSize, plusSize, plusStroke));
+    }
+
+    private PlusIconDrawable(PlusState state) {
+        mState = state;
+        mPaint.setStyle(Style.FILL);
+        mPaint.setColor(state.mColor);
+    }
+
+    /**
+     * @return the morph progress, 0 for a plus and 1 for an X.
+     */
+    public float getProgress() {
+        return mProgress;
+    }
+
+    /**
+     * Morphs the icon between a plus (0) and an X (1). Values outside of that range overshoot the
+     * rotation accordingly.
+     */
+    public void setProgress(float progress) {
+        if (mProgress != progress) {
+            mProgress = progress;
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * Updates the color and the geometry of the icon. Does nothing if none of them changed.
+     */
+    public void set(int color, float iconSize, float plusSize, float plusStroke) {
+        final PlusState state = mState;
+        if (state.mColor != color || state.mIconSize != iconSize || state.mPlusSize != plusSize || state.mPlusStroke != plusStroke) {
+            // The state may be shared through getConstantState(), so it's replaced rather than changed
+            mState = new PlusState(color, iconSize, plusSize, plusStroke);
+            mPaint.setColor(color);
+            updateBars(getBounds());
+            invalidateSelf();
+        }
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        int count = canvas.save();
+        canvas.rotate(mProgress * EXPANDED_ROTATION, mCenterX, mCenterY);
+        canvas.drawRect(mHorizontalBar, mPaint);
+        canvas.drawRect(mVerticalBar, mPaint);
+        canvas.restoreToCount(count);
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        updateBars(bounds);
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        mPaint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter cf) {
+        mPaint.setColorFilter(cf);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    @Override
+    public ConstantState getConstantState() {
+        return mState;
+    }
+
+    private void updateBars(Rect bounds) {
+        final PlusState state = mState;
+        final float iconHalfSize = state.mIconSize / 2f;
+        final float plusHalfStroke = state.mPlusStroke / 2f;
+        final float plusOffset = (state.mIconSize - state.mPlusSize) / 2f;
+
+        // Same geometry as the plus shape used to have, anchored at the top left of the bounds
+        mHorizontalBar.set(plusOffset, iconHalfSize - plusHalfStroke, state.mIconSize - plusOffset, iconHalfSize + plusHalfStroke);
+        mHorizontalBar.offset(bounds.left, bounds.top);
+        mVerticalBar.set(iconHalfSize - plusHalfStroke, plusOffset, iconHalfSize + plusHalfStroke, state.mIconSize - plusOffset);
+        mVerticalBar.offset(bounds.left, bounds.top);
+
+        mCenterX = bounds.centerX();
+        mCenterY = bounds.centerY();
+    }
+
+    static final class PlusState extends ConstantState {
+        private final int mColor;
+        private final float mIconSize;
+        private final float mPlusSize;
+        private final float mPlusStroke;
+
+        PlusState(int color, float iconSize, float plusSize, float plusStroke) {
+            mColor = color;
+            mIconSize = iconSize;
+            mPlusSize = plusSize;
+            mPlusStroke = plusStroke;
+        }
+
+        @Override
+        public Drawable newDrawable() {
+            return new PlusIconDrawable(this);
+        }
+
+        @Override
+        public Drawable newDrawable(Resources res) {
+            return new PlusIconDrawable(this);
+        }
+
+        @Override
+        public int getChangingConfigurations() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+    Copyright (C) 2014 Jerzy Chalupski
+
+    Modified by: Garrett Franks 2015
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.github.gfranks.fab.menu;
+
+/**
+ * Closed form solution of a damped spring, so the motion can be evaluated at any time without
+ * integrating state or allocating. Positions are displacements from the rest position and times are
+ * in seconds.
+ */
+final class SpringSolver {
+
+    private static final float REST_DISPLACEMENT = 0.001f;
+    private static final float REST_VELOCITY = 0.01f;
+    private static final float SETTLE_STEP = 1f / 60f;
+    private static final float MAX_SETTLE_TIME = 5f;
+    private static final double CRITICAL_DAMPING_TOLERANCE = 0.0001;
+    private static final int VELOCITY_LIMIT_ITERATIONS = 16;
+
+    private double mNaturalFrequency;
+    private double mDampingRatio;
+    private double mDampedFrequency;
+
+    /**
+     * @param stiffness    the spring constant for a unit mass, in 1/s^2.
+     * @param dampingRatio 1 for a critically damped spring, less for one that oscillates.
+     */
+    void setParameters(float stiffness, float dampingRatio) {
+        if (stiffness <= 0f || dampingRatio < 0f) {
+            throw new IllegalArgumentException("The stiffness must be positive and the damping ratio can't be negative");
+        }
+
+        mNaturalFrequency = Math.sqrt(stiffness);
+        mDampingRatio = dampingRatio;
+        // The oscillation frequency when underdamped, the spread of the decay rates when overdamped
+        mDampedFrequency = mNaturalFrequency * Math.sqrt(Math.abs(1.0 - mDampingRatio * mDampingRatio));
+    }
+
+    /**
+     * @return the displacement at the given time of a spring released at the given displacement and
+     * velocity.
+     */
+    float getDisplacement(float displacement, float velocity, float time) {
+        final double omega = mNaturalFrequency;
+        final double zeta = mDampingRatio;
+
+        if (zeta < 1.0 - CRITICAL_DAMPING_TOLERANCE) {
+            final double b = (velocity + zeta * omega * displacement) / mDampedFrequency;
+            return (float) (Math.exp(-zeta * omega * time)
+                    * (displacement * Math.cos(mDampedFrequency * time) + b * Math.sin(mDampedFrequency * time)));
+        } else if (zeta > 1.0 + CRITICAL_DAMPING_TOLERANCE) {
+            final double slowRate = -zeta * omega + mDampedFrequency;
+            final double fastRate = -zeta * omega - mDampedFrequency;
+            final double fast = (velocity - slowRate * displacement) / (fastRate - slowRate);
+            final double slow = displacement - fast;
+            return (float) (slow * Math.exp(slowRate * time) + fast * Math.exp(fastRate * time));
+        } else {
+            final double b = velocity + omega * displacement;
+            return (float) ((displacement + b * time) * Math.exp(-omega * time));
+        }
+    }
+
+    /**
+     * @return the velocity at the given time of a spring released at the given displacement and
+     * velocity.
+     */
+    float getVelocity(float displacement, float velocity, float time) {
+        final double omega = mNaturalFrequency;
+        final double zeta = mDampingRatio;
+
+        if (zeta < 1.0 - CRITICAL_DAMPING_TOLERANCE) {
+            final double b = (velocity + zeta * omega * displacement) / mDampedFrequency;
+            final double cos = Math.cos(mDampedFrequency * time);
+            final double sin = Math.sin(mDampedFrequency * time);
+            return (float) (Math.exp(-zeta * omega * time)
+                    * ((b * mDampedFrequency - zeta * omega * displacement) * cos
+                    - (displacement * mDampedFrequency + zeta * omega * b) * sin));
+        } else if (zeta > 1.0 + CRITICAL_DAMPING_TOLERANCE) {
+            final double slowRate = -zeta * omega + mDampedFrequency;
+            final double fastRate = -zeta * omega - mDampedFrequency;
+            final double fast = (velocity - slowRate * displacement) / (fastRate - slowRate);
+            final double slow = displacement - fast;
+            return (float) (slow * slowRate * Math.exp(slowRate * time) + fast * fastRate * Math.exp(fastRate * time));
+        } else {
+            final double b = velocity + omega * displacement;
+            return (float) ((b - omega * (displacement + b * time)) * Math.exp(-omega * time));
+        }
+    }
+
+    /**
+     * @return the time after which a spring released at the given displacement and velocity stays
+     * within a thousandth of the unit distance from its rest position, capped at five seconds.
+     */
+    float getSettleTime(float displacement, float velocity) {
+        float time = 0f;
+        while (time < MAX_SETTLE_TIME
+                && (Math.abs(getDisplacement(displacement, velocity, time)) > REST_DISPLACEMENT
+                || Math.abs(getVelocity(displacement, velocity, time)) > REST_VELOCITY)) {
+            time += SETTLE_STEP;
+        }
+        return time;
+    }
+
+    /**
+     * @return the smallest displacement a spring released at the given displacement and velocity
+     * reaches, from its start, any later turning point or its rest position.
+     */
+    float getMinDisplacement(float displacement, float velocity) {
+        final double omega = mNaturalFrequency;
+        final double zeta = mDampingRatio;
+        float min = Math.min(displacement, 0f);
+
+        if (zeta < 1.0 - CRITICAL_DAMPING_TOLERANCE) {
+            // The velocity is zero where the phase of the oscillation is phi + k * PI. The turning
+            // points only shrink after the first two, one on each side of the rest position.
+            final double b = (velocity + zeta * omega * displacement) / mDampedFrequency;
+            double phase = Math.atan2(velocity, displacement * mDampedFrequency + zeta * omega * b);
+            if (phase <= 0) {
+                phase += Math.PI;
+            }
+            min = Math.min(min, getDisplacement(displacement, velocity, (float) (phase / mDampedFrequency)));
+            min = Math.min(min, getDisplacement(displacement, velocity, (float) ((phase + Math.PI) / mDampedFrequency)));
+        } else if (zeta > 1.0 + CRITICAL_DAMPING_TOLERANCE) {
+            final double slowRate = -zeta * omega + mDampedFrequency;
+            final double fastRate = -zeta * omega - mDampedFrequency;
+            final double fast = (velocity - slowRate * displacement) / (fastRate - slowRate);
+            final double slow = displacement - fast;
+            final double ratio = -fast * fastRate / (slow * slowRate);
+            if (slow * slowRate != 0 && ratio > 0) {
+                final double time = Math.log(ratio) / (slowRate - fastRate);
+                if (time > 0) {
+                    min = Math.min(min, getDisplacement(displacement, velocity, (float) time));
+                }
+            }
+        } else {
+            final double b = velocity + omega * displacement;
+            if (b != 0) {
+                final double time = 1.0 / omega - displacement / b;
+                if (time > 0) {
+                    min = Math.min(min, getDisplacement(displacement, velocity, (float) time));
+                }
+            }
+        }
+        return min;
+    }
+
+    /**
+     * @return the given velocity, scaled down just enough that a spring released with it at the given
+     * displacement never goes below the given displacement. The motion stays unconstrained, so the
+     * release keeps as much of the velocity as fits.
+     */
+    float limitVelocity(float displacement, float velocity, float minDisplacement) {
+        if (getMinDisplacement(displacement, velocity) >= minDisplacement) {
+            return velocity;
+        }
+        if (getMinDisplacement(displacement, 0f) < minDisplacement) {
+            return 0f;
+        }
+
+        // The lowest point is concave in the velocity scale, so the scales that fit form an interval
+        float low = 0f;
+        float high = 1f;
+        for (int i = 0; i < VELOCITY_LIMIT_ITERATIONS; i++) {
+            final float scale = (low + high) / 2f;
+            if (getMinDisplacement(displacement, velocity * scale) >= minDisplacement) {
+                low = scale;
+            } else {
+                high = scale;
+            }
+        }
+        return velocity * low;
+    }
+
+    /**
+     * @return how far past its rest position a spring released from rest swings, as a fraction of its
+     * initial displacement.
+     */
+    float getOvershoot() {
+        if (mDampingRatio >= 1.0) {
+            return 0f;
+        }
+        return (float) Math.exp(-mDampingRatio * Math.PI / Math.sqrt(1.0 - mDampingRatio * mDampingRatio));
+    }
+}